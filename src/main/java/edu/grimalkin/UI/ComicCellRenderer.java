@@ -0,0 +1,60 @@
+package edu.grimalkin.ui;
+
+import javax.swing.*;
+import javax.swing.border.TitledBorder;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import edu.grimalkin.data.Comic;
+import edu.grimalkin.util.DecodedImageCache;
+
+/**
+ * Une classe "ComicCellRenderer" permettant de dessiner les vignettes de la bibliothèque dans une JList.
+ * Un seul JLabel est réutilisé pour dessiner toutes les vignettes visibles : la mémoire occupée ne dépend donc pas
+ * de la taille de la bibliothèque. La couverture d'un comic est prise dans un cache borné, indexé par chemin du comic ;
+ * tant qu'elle n'y est pas (chargement en cours, ou couverture retirée du cache), une vignette vide est dessinée.
+ * La classe hérite de DefaultListCellRenderer
+ * @see DefaultListCellRenderer https://docs.oracle.com/javase/8/docs/api/javax/swing/DefaultListCellRenderer.html
+ */
+public class ComicCellRenderer extends DefaultListCellRenderer {
+    /** Hauteur réservée aux couvertures, en pixels */
+    public static final int COVER_HEIGHT = Comic.COVER_WIDTH * 8 / 5;
+
+    /** Couvertures des comics, indexées par chemin du comic */
+    private final DecodedImageCache covers;
+    /** Icône des vignettes dont la couverture n'est pas chargée */
+    private final Icon placeholder = new ImageIcon(new BufferedImage(Comic.COVER_WIDTH, COVER_HEIGHT, BufferedImage.TYPE_INT_ARGB));
+    /** Bordure titrée de la vignette, dont seul le titre change d'une vignette à l'autre */
+    private final TitledBorder border = BorderFactory.createTitledBorder("");
+
+    /**
+     * Constructeur avec paramètres
+     * @param _covers Couvertures des comics, indexées par chemin du comic
+     */
+    public ComicCellRenderer(DecodedImageCache _covers) {
+        covers = _covers;
+        setHorizontalAlignment(SwingConstants.CENTER);
+        setVerticalAlignment(SwingConstants.TOP);
+    }
+
+    /**
+     * Méthode permettant de préparer le dessin de la vignette d'un comic
+     * @param list Liste des comics
+     * @param value Comic de la vignette
+     * @param index Index de la vignette
+     * @param isSelected true si la vignette est sélectionnée
+     * @param cellHasFocus true si la vignette a le focus
+     * @return Composant dessinant la vignette
+     */
+    @Override
+    public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+        super.getListCellRendererComponent(list, null, index, isSelected, cellHasFocus);
+        Comic comic = (Comic) value;
+        Image cover = covers.get(comic.getPath());
+        setIcon(cover != null ? new ImageIcon(cover) : placeholder);
+        border.setTitle(comic.getTitle());
+        setBorder(border);
+        setToolTipText(comic.getTitle());
+        return this;
+    }
+}
@@ -0,0 +1,179 @@
+package edu.grimalkin.ui;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import edu.grimalkin.data.Comic;
+import edu.grimalkin.data.Page;
+import edu.grimalkin.util.CoverCache;
+import edu.grimalkin.util.ImageScaler;
+import edu.grimalkin.util.RenditionCache;
+import edu.grimalkin.util.ZipUtil;
+
+/**
+ * Une classe "ComicLoader" permettant de charger les pages d'un comic en arrière-plan, sans bloquer l'EDT.
+ * Le chargement se fait en trois temps :
+ * - les pages de l'archive sont listées, en ne lisant que son répertoire central (ZIP) ou ses en-têtes (RAR) ;
+ * - l'en-tête de la page courante du comic (première page, ou dernière page lue) est sondé ; sauf si elle est très haute
+ *   (affichée par bandes, sans jamais être décodée en entier), elle est décodée et rendue à la largeur d'affichage,
+ *   puis le comic est publié : opened() est appelée sur l'EDT et la page peut être affichée immédiatement ;
+ * - les dimensions des autres pages sont lues en sondant l'en-tête de leur entrée, en faisant avancer la progression (0 à 100).
+ * Le comic lui-même n'est modifié que sur l'EDT : ses pages, sa couverture et sa page courante sont publiées par le thread
+ * de chargement, puis affectées au comic dans process(), juste avant l'appel de opened() ; seules les dimensions des pages
+ * sont encore renseignées après la publication, par des attributs volatils de Page.
+ * loaded() est appelée sur l'EDT à la fin du chargement et failed() en cas d'erreur ;
+ * aucune des deux n'est appelée si le chargement est annulé (fermeture de l'onglet).
+ * La classe hérite de SwingWorker
+ * @see SwingWorker https://docs.oracle.com/javase/8/docs/api/javax/swing/SwingWorker.html
+ */
+public class ComicLoader extends SwingWorker<Comic, ComicLoader.Opened> {
+    /**
+     * Pages, couverture et page courante d'un comic, lues par le thread de chargement et affectées au comic sur l'EDT
+     */
+    static final class Opened {
+        /** Pages du comic, dont la page courante est prête */
+        private final List<Page> pages;
+        /** Couverture du comic */
+        private final BufferedImage cover;
+        /** Index de la page courante */
+        private final int current;
+
+        /**
+         * Constructeur avec paramètres
+         * @param _pages Pages du comic, dont la page courante est prête
+         * @param _cover Couverture du comic
+         * @param _current Index de la page courante
+         */
+        Opened(List<Page> _pages, BufferedImage _cover, int _current) {
+            pages = _pages;
+            cover = _cover;
+            current = _current;
+        }
+    }
+
+    /** Comic à charger, dont le chemin est connu (modifié depuis l'EDT uniquement) */
+    private final Comic comic;
+    /** Chemin de l'archive du comic */
+    private final String path;
+    /** Page courante du comic à l'ouverture */
+    private final int currentPage;
+    /** Largeur d'affichage de la page courante (0 ou moins si elle n'est pas connue) */
+    private final int width;
+    /** Pages publiées par le thread de chargement, ou null si elles ne le sont pas encore */
+    private volatile Opened published;
+    /** Indique si opened() a déjà été appelée (accès depuis l'EDT uniquement) */
+    private boolean opened;
+
+    /**
+     * Constructeur avec paramètres
+     * @param _comic Comic à charger, dont le chemin est connu
+     * @param _width Largeur d'affichage de la page courante (0 ou moins si elle n'est pas connue)
+     */
+    public ComicLoader(Comic _comic, int _width) {
+        comic = _comic;
+        path = _comic.getPath();
+        currentPage = _comic.getCurrentPage();
+        width = _width;
+    }
+
+    /**
+     * Accesseur en lecture du comic chargé
+     * @return Comic chargé (ses pages ne sont renseignées qu'après l'appel de opened())
+     */
+    public Comic getComic() {return comic;}
+
+    /**
+     * Méthode exécutée en arrière-plan, chargeant les pages du comic
+     * @return Comic chargé
+     * @throws IOException Retourne une exception si l'archive n'a pas pu être lue
+     */
+    @Override
+    protected Comic doInBackground() throws IOException {
+        File file = new File(path);
+        List<Page> pages = ZipUtil.index(file);
+        if (pages.isEmpty()) {
+            throw new IOException("No page found in " + file.getName());
+        }
+        int current = Math.max(0, Math.min(pages.size() - 1, currentPage));
+        Page page = pages.get(current);
+        // only the header is read first, a tall page is then left to the strips of PageView
+        boolean known = ZipUtil.probe(page);
+        if (!known || !PageView.isTall(page)) {
+            // the entry is read and decoded once, the dimensions of the page are known afterwards
+            if (page.getImage(Math.max(0, width)) == null) {
+                throw new IOException("Could not read " + page.getEntryName() + " from " + file.getName());
+            }
+            if (width > 0 && !PageView.isTall(page)) {
+                RenditionCache.getInstance().get(page, width, 0, 0, ImageScaler.QUALITY);
+            }
+        }
+        // only the first entry is read for the cover, and only if it is not in the cover cache
+        BufferedImage cover = CoverCache.getCover(file, Comic.COVER_WIDTH);
+        published = new Opened(pages, cover, current);
+        publish(published);
+        ZipUtil.probe(file, pages, probed -> setProgress(probed * 100 / pages.size()));
+        return comic;
+    }
+
+    /**
+     * Méthode appelée sur l'EDT lorsque la page courante est prête : les pages publiées sont affectées au comic
+     * @param chunks Pages publiées (ignorées, les dernières pages publiées étant conservées)
+     */
+    @Override
+    protected void process(List<Opened> chunks) {
+        Opened state = published;
+        if (isCancelled() || opened || state == null) {
+            return;
+        }
+        opened = true;
+        comic.setPages(state.pages);
+        comic.setCover(state.cover);
+        comic.goToPage(state.current);
+        opened(comic);
+    }
+
+    /**
+     * Méthode appelée sur l'EDT à la fin du chargement
+     */
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            Comic loadedComic = get();
+            // the published chunk may not have been processed yet for small archives
+            process(null);
+            loaded(loadedComic);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            failed(e.getCause());
+        }
+    }
+
+    /**
+     * Méthode appelée sur l'EDT lorsque les pages du comic sont listées et que sa page courante est prête à être affichée.
+     * Les dimensions des autres pages ne sont pas encore toutes connues.
+     * @param openedComic Comic chargé
+     */
+    protected void opened(Comic openedComic) {}
+
+    /**
+     * Méthode appelée sur l'EDT lorsque toutes les pages du comic sont chargées
+     * @param loadedComic Comic chargé
+     */
+    protected void loaded(Comic loadedComic) {}
+
+    /**
+     * Méthode appelée sur l'EDT lorsque le chargement a échoué
+     * @param cause Cause de l'échec
+     */
+    protected void failed(Throwable cause) {
+        cause.printStackTrace();
+    }
+}
@@ -4,6 +4,9 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseEvent;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Future;
 
 /**
  * Une classe "JTabbedPaneCloseButton" permettant d'ajouter un bouton de fermeture à un JTabbedPane
@@ -14,6 +17,16 @@ import java.awt.event.MouseEvent;
  * @author Small changes by me
  */
 public class JTabbedPaneCloseButton extends JTabbedPane {
+    /**
+     * Propriété client du composant d'un onglet désignant la tâche en arrière-plan attachée à l'onglet (Future),
+     * annulée à la fermeture de l'onglet
+     */
+    public static final String TASK_PROPERTY = "JTabbedPaneCloseButton.task";
+    /**
+     * Propriété client du composant d'un onglet désignant une ressource attachée à l'onglet (Closeable),
+     * fermée à la fermeture de l'onglet
+     */
+    public static final String RESOURCE_PROPERTY = "JTabbedPaneCloseButton.resource";
 
     /**
      * Constructeur par défaut
@@ -60,6 +73,32 @@ public class JTabbedPaneCloseButton extends JTabbedPane {
         addTab(title, null, component);
     }
 
+    /**
+     * Override de removeTabAt pour annuler la tâche en arrière-plan et fermer la ressource attachées à l'onglet fermé, s'il y en a
+     * @param index index de l'onglet
+     * @see #TASK_PROPERTY
+     * @see #RESOURCE_PROPERTY
+     */
+    @Override
+    public void removeTabAt(int index) {
+        Component component = getComponentAt(index);
+        if (component instanceof JComponent) {
+            Object task = ((JComponent) component).getClientProperty(TASK_PROPERTY);
+            if (task instanceof Future) {
+                ((Future<?>) task).cancel(true);
+            }
+            Object resource = ((JComponent) component).getClientProperty(RESOURCE_PROPERTY);
+            if (resource instanceof Closeable) {
+                try {
+                    ((Closeable) resource).close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        super.removeTabAt(index);
+    }
+
     /**
      * Méthode permettant d'ajouter un onglet sans bouton de fermeture en prenant quatre paramètres
      * @param title titre de l'onglet
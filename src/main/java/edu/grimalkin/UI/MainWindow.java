@@ -2,21 +2,33 @@ package edu.grimalkin.ui;
 
 import java.awt.*;
 import java.awt.event.*;
-import java.awt.geom.AffineTransform;
-import java.awt.image.BufferedImage;
-import java.awt.image.AffineTransformOp;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
-import com.github.junrar.exception.RarException;
-
+import edu.grimalkin.util.CoverCache;
+import edu.grimalkin.util.DecodedImageCache;
+import edu.grimalkin.util.ImageDecoder;
+import edu.grimalkin.util.ImageScaler;
+import edu.grimalkin.util.PagePrefetcher;
+import edu.grimalkin.util.RenditionCache;
+import edu.grimalkin.util.ZipArchive;
 import edu.grimalkin.util.ZipUtil;
 import edu.grimalkin.util.JSONUtil;
+import edu.grimalkin.util.LibraryWriter;
+import edu.grimalkin.util.ProgressJournal;
 import edu.grimalkin.data.*;
 
 /**
@@ -25,6 +37,10 @@ import edu.grimalkin.data.*;
  * Une sélection d'objets Swing est mise en place pour permettre une manipulation plus aisée des composants de la fenêtre.
  */
 public class MainWindow extends JFrame {
+	/** Budget du cache des couvertures de la bibliothèque, en octets */
+	private static final long COVER_BUDGET = 16L * 1024 * 1024;
+	/** Délai avant une nouvelle tentative de lecture d'une couverture en échec, en millisecondes */
+	private static final long COVER_RETRY_DELAY = 30_000;
 	/** Librairie de comics */
 	private Library library; 
 	/** Panel de la fenêtre principale */
@@ -35,10 +51,28 @@ public class MainWindow extends JFrame {
 	private JPanel libraryPanel = new JPanel();
 	/** ScrollPane de la librairie */
 	private JScrollPane libraryScrollPane = new JScrollPane();
-	/** Panel des vignettes */
-	private JPanel thumbnailsPanel = new JPanel();
+	/** Champ de recherche de la librairie, filtrant les vignettes pendant la frappe */
+	private final JTextField filterField = new JTextField();
+	/** Comics affichés dans la liste des vignettes */
+	private final DefaultListModel<Comic> thumbnailsModel = new DefaultListModel<Comic>();
+	/** Liste des vignettes : seules les vignettes visibles sont dessinées, par un unique ComicCellRenderer */
+	private final JList<Comic> thumbnailsList = new JList<Comic>(thumbnailsModel);
+	/** Couvertures chargées, indexées par chemin du comic (budget fixe, quelle que soit la taille de la bibliothèque) */
+	private final DecodedImageCache covers = new DecodedImageCache(COVER_BUDGET);
+	/** Chargements de couvertures en cours, indexés par chemin du comic (accès depuis l'EDT uniquement) */
+	private final Map<String, Future<?>> coverRequests = new HashMap<String, Future<?>>();
+	/** Date à partir de laquelle une couverture en échec peut être relue, indexée par chemin du comic (accès depuis l'EDT uniquement) */
+	private final Map<String, Long> coverFailures = new HashMap<String, Long>();
 	/** Panel de droite */
 	private JTabbedPaneCloseButton rightPane = new JTabbedPaneCloseButton();
+	/** Préchargeur des pages voisines de la page affichée */
+	private final PagePrefetcher prefetcher = new PagePrefetcher();
+	/** Durabilité du journal de la progression de lecture */
+	private static final ProgressJournal.Durability JOURNAL_DURABILITY = ProgressJournal.Durability.BATCH;
+	/** Journal de la progression de lecture */
+	private final ProgressJournal journal = new ProgressJournal(JOURNAL_DURABILITY);
+	/** Enregistrement en arrière-plan de la bibliothèque */
+	private final LibraryWriter libraryWriter = new LibraryWriter(journal);
 	/** Panel de l'onglet de démarrage rapide */
 	private JPanel quickstartPanel = new JPanel();
 	/** Fenêtre de dialogue "Raccourcis clavier" */
@@ -78,6 +112,9 @@ public class MainWindow extends JFrame {
 			library = JSONUtil.readJSONFile();
 			// display comics infos in the library
 			library.displayComics();
+			// page turns since the last snapshot
+			System.out.println(journal.replay(library) + " progress records replayed");
+			// only the metadata is loaded, the archives are read when the comics are opened
 			library.initComics();
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -363,21 +400,53 @@ public class MainWindow extends JFrame {
 		// leftPane.addTab("Pages", comicPagesPanel);
 		libraryPanel.setLayout(new BorderLayout());
 		libraryPanel.add(libraryScrollPane, BorderLayout.CENTER);
-		libraryScrollPane.setViewportView(thumbnailsPanel);
+		// the thumbnails are filtered as the user types, Escape clears the filter
+		libraryPanel.add(filterField, BorderLayout.NORTH);
+		filterField.putClientProperty("JTextField.placeholderText", "Search");
+		filterField.setToolTipText("Search the library by title or path");
+		filterField.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {filterLibrary();}
+			@Override
+			public void removeUpdate(DocumentEvent e) {filterLibrary();}
+			@Override
+			public void changedUpdate(DocumentEvent e) {filterLibrary();}
+		});
+		filterField.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "clearFilter");
+		filterField.getActionMap().put("clearFilter", new AbstractAction() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				filterField.setText("");
+			}
+		});
+		libraryScrollPane.setViewportView(thumbnailsList);
 		// setup scroll bars
 		libraryScrollPane.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
 		libraryScrollPane.setVerticalScrollBarPolicy(ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS);
 		// speed up scrolling
 		libraryScrollPane.getVerticalScrollBar().setUnitIncrement(16);
-		// set layout for thumbnails panel;
-		thumbnailsPanel.setLayout(new FlowLayout());
-		// set thumbnailsPanel container size
-		thumbnailsPanel.setPreferredSize(new Dimension(180, 0));
-		// load library
-		// for each comic in library
-		for (Comic comic : library.getComics()) {
-			displayThumbnail(comic, thumbnailsPanel);
-		}
+		// thumbnails are laid out as a grid, wrapping to the width of the pane
+		thumbnailsList.setCellRenderer(new ComicCellRenderer(covers));
+		thumbnailsList.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+		thumbnailsList.setVisibleRowCount(-1);
+		thumbnailsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		// every cell has the size of the prototype, the other cells are never measured
+		thumbnailsList.setPrototypeCellValue(new Comic("Prototype", ""));
+		// add event listener to thumbnails, open the comic on click
+		thumbnailsList.addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				int index = thumbnailsList.locationToIndex(e.getPoint());
+				// if left mouse button is clicked on a thumbnail
+				if (e.getButton() == MouseEvent.BUTTON1 && index >= 0 && thumbnailsList.getCellBounds(index, index).contains(e.getPoint())) {
+					openFromLibrary(thumbnailsModel.get(index));
+				}
+			}
+		});
+		// covers are loaded as their thumbnails scroll into view
+		libraryScrollPane.getViewport().addChangeListener(e -> loadVisibleCovers());
+		// load library, in a single update of the list
+		filterLibrary();
 		splitPane.setLeftComponent(leftPane);
 	}
 
@@ -419,127 +488,185 @@ public class MainWindow extends JFrame {
 
 	/**
 	 * Méthode permettant de mettre à jour la bibliothèque de comics en sauvegardant les modifications dans le fichier JSON
-	 * @see JSONUtil#writeJSONFile(Library)
+	 * Le fichier est écrit en arrière-plan, les mises à jour rapprochées n'entraînant qu'une seule écriture
+	 * @see LibraryWriter#save(Library)
 	 */
 	private void updateLibrary() {
-		try {
-			JSONUtil.writeJSONFile(library);
-		}
-		catch (IOException e) {
-			e.printStackTrace();
-		}
+		libraryWriter.save(library);
 	}
 
 	/**
 	 * Méthode permettant de mettre à jour un comic dans la bibliothèque
+	 * Seule sa progression est enregistrée, dans le journal : le fichier JSON n'est pas réécrit
 	 * @param title Titre du comic à mettre à jour
 	 * @param currentPage Page courante du comic
-	 * @see #updateLibrary()
+	 * @see LibraryWriter#progress(Library, Comic)
 	 */
 	private void updateComic(String title, int currentPage) {
 		Comic comic = library.getComic(title);
 		comic.setCurrentPage(currentPage);
 		comic.setLastPageRead(currentPage);
 		System.out.println("Updating comic " + title + " to page " + currentPage);
-		updateLibrary();
+		libraryWriter.progress(library, comic);
 	}
 
 	/**
-	 * Méthode permettant d'afficher un comic dans le panneau de droite
+	 * Méthode permettant de récupérer le comic d'un onglet, une fois ses pages chargées
+	 * @param title Titre de l'onglet
+	 * @return Comic de l'onglet, ou null s'il n'est pas encore dans la bibliothèque ou si ses pages ne sont pas encore publiées
+	 */
+	private Comic getOpenedComic(String title) {
+		Comic comic = library.getComic(title);
+		return comic != null && comic.isLoaded() && !comic.getPages().isEmpty() ? comic : null;
+	}
+
+	/**
+	 * Méthode permettant d'ajouter la vignette d'un comic à la bibliothèque
+	 * La couverture du comic est chargée lorsque sa vignette est visible, sauf si elle est déjà connue.
 	 * @param comic Comic à afficher
-	 * @see #updateComic(String, int)
+	 * @see #loadVisibleCovers()
 	 */
-	private void displayThumbnail(Comic comic, JPanel thumbnailsPanel) {
-		// Create new thumbnail
-		JLabel thumbnail = new JLabel();
-		thumbnail.setName(comic.getTitle());
-		// set titled border
-		thumbnail.setBorder(BorderFactory.createTitledBorder(comic.getTitle()));
-		ImageIcon icon = new ImageIcon(comic.getCover());
-		Image img = icon.getImage();
-		Image newimg = img.getScaledInstance(100, -1,  java.awt.Image.SCALE_SMOOTH);
-		icon = new ImageIcon(newimg);
-		thumbnail.setIcon(icon);
-		// add event listener to thumbnail
-		thumbnail.addMouseListener(new MouseAdapter() {
-			@Override
-			public void mouseClicked(MouseEvent e) {
-				// if left mouse button is clicked
-				if (e.getButton() == MouseEvent.BUTTON1) {
-					// if comic is already open
-					for (int i = 0; i < rightPane.getTabCount(); i++) {
-						if (rightPane.getTitleAt(i).equals(comic.getTitle())) {
-							// select tab
-							rightPane.setSelectedIndex(i);
-							return;
-						}
-					}
-					// if comic is not open
-					// add new tab to right pane
-					JPanel comicPagesPanel = new JPanel();
+	private void displayThumbnail(Comic comic) {
+		if (comic.getCover() != null) {
+			covers.put(comic.getPath(), RenditionCache.scale(comic.getCover(), Comic.COVER_WIDTH, 0, ImageScaler.QUALITY));
+		}
+		if (filterField.getText().trim().isEmpty()) {
+			thumbnailsModel.addElement(comic);
+		} else {
+			// the comic is only displayed if it matches the filter
+			filterLibrary();
+		}
+		// the list is laid out again before its covers are looked for
+		SwingUtilities.invokeLater(this::loadVisibleCovers);
+	}
 
-					JScrollPane comicPageScrollPane = new JScrollPane();
+	/**
+	 * Méthode permettant d'afficher les vignettes des comics correspondant au texte du champ de recherche
+	 * La recherche utilise l'index de la bibliothèque et la liste est remplacée en une seule mise à jour ;
+	 * seules les couvertures des vignettes visibles sont ensuite chargées.
+	 * @see Library#search(String)
+	 */
+	private void filterLibrary() {
+		List<Comic> comics = library.search(filterField.getText());
+		thumbnailsModel.clear();
+		thumbnailsModel.addAll(comics);
+		if (!comics.isEmpty()) {
+			thumbnailsList.ensureIndexIsVisible(0);
+		}
+		SwingUtilities.invokeLater(this::loadVisibleCovers);
+	}
 
-					JPanel comicPagePanel = new JPanel();
-					{
-						comicPagesPanel.setLayout(new BorderLayout());
-						rightPane.addTab(comic.getTitle(), comicPagesPanel);
-						rightPane.setSelectedIndex(rightPane.getTabCount() - 1);
-					}
-					// Comics Pane Setup
-					{
-						comicPagesPanel.setLayout(new BorderLayout());
-						comicPageScrollPane.setBorder(BorderFactory.createTitledBorder("Page 1"));
-						comicPageScrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
-						comicPageScrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
-						// Speed up scrolling
-						comicPageScrollPane.getVerticalScrollBar().setUnitIncrement(16);
-						comicPageScrollPane.getHorizontalScrollBar().setUnitIncrement(16);
-						comicPageScrollPane.setViewportView(comicPagePanel);
-						comicPagePanel.setLayout(new BorderLayout());
-					}
-					comicPagesPanel.add(comicPageScrollPane, BorderLayout.CENTER);
-					// add comic pages to comic pages panel
-					Comic comic = library.getComic(thumbnail.getName());
-					// Get Comic Page
-					Page page = comic.getPages().get(comic.getCurrentPage());
-					// Display Comic Page
-					displayPage(page, comicPagePanel);
+	/**
+	 * Méthode permettant d'ouvrir un comic de la bibliothèque, ou de sélectionner son onglet s'il est déjà ouvert
+	 * @param comic Comic à ouvrir
+	 * @see #openComic(Comic)
+	 */
+	private void openFromLibrary(Comic comic) {
+		// if comic is already open
+		for (int i = 0; i < rightPane.getTabCount(); i++) {
+			if (rightPane.getTitleAt(i).equals(comic.getTitle())) {
+				// select tab
+				rightPane.setSelectedIndex(i);
+				return;
+			}
+		}
+		// if comic is not open, open it in a new tab
+		openComic(comic);
+	}
+
+	/**
+	 * Méthode permettant de charger en arrière-plan les couvertures des vignettes visibles de la bibliothèque.
+	 * Les couvertures ne sont pas lues au démarrage : elles sont lues dans le cache des couvertures (ou à défaut dans l'archive)
+	 * sur le pool de décodage lorsque leur vignette apparaît dans la zone visible,
+	 * et les chargements en cours des vignettes sorties de cette zone sont annulés.
+	 * Une couverture qui n'a pas pu être lue n'est relue qu'après un délai (COVER_RETRY_DELAY).
+	 * @see CoverCache#getCover(File, int)
+	 */
+	private void loadVisibleCovers() {
+		long now = System.currentTimeMillis();
+		coverFailures.values().removeIf(retry -> retry <= now);
+		Set<String> wanted = new HashSet<String>();
+		int first = thumbnailsList.getFirstVisibleIndex();
+		int last = thumbnailsList.getLastVisibleIndex();
+		for (int i = Math.max(0, first); i <= last; i++) {
+			Comic comic = thumbnailsModel.get(i);
+			String path = comic.getPath();
+			if (covers.contains(path)) {
+				continue;
+			}
+			wanted.add(path);
+			if (coverRequests.containsKey(path) || coverFailures.containsKey(path)) {
+				continue;
+			}
+			coverRequests.put(path, ImageDecoder.getPool().submit(() -> {
+				try {
+					Image cover = CoverCache.getCover(new File(path), Comic.COVER_WIDTH);
+					covers.put(path, cover);
+					SwingUtilities.invokeLater(() -> {
+						coverRequests.remove(path);
+						// the thumbnail may have moved in the meantime
+						int index = thumbnailsModel.indexOf(comic);
+						if (index >= 0) {
+							thumbnailsList.repaint(thumbnailsList.getCellBounds(index, index));
+						}
+					});
+				} catch (IOException | RuntimeException e) {
+					e.printStackTrace();
+					// the cover is read again once the delay has passed and the thumbnail is still visible
+					SwingUtilities.invokeLater(() -> {
+						coverRequests.remove(path);
+						coverFailures.put(path, System.currentTimeMillis() + COVER_RETRY_DELAY);
+					});
 				}
+			}));
+		}
+		// cancel the covers scrolled out of view
+		Iterator<Map.Entry<String, Future<?>>> iterator = coverRequests.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, Future<?>> entry = iterator.next();
+			if (!wanted.contains(entry.getKey()) && !entry.getValue().isDone()) {
+				entry.getValue().cancel(false);
+				iterator.remove();
 			}
-		});
-		// add thumbnail to thumbnail panel
-		thumbnailsPanel.add(thumbnail);
-		// Update thumbnails panel
-		thumbnailsPanel.revalidate();
-		thumbnailsPanel.repaint();
+		}
 	}
 
 	/**
 	 * Méthode permettant d'afficher une page dans le panneau de droite
 	 * @param page Page à afficher
 	 * @param comicPagePanel Panneau de droite
-	 * @see #displayThumbnail(Comic, JPanel)
+	 * @see #displayThumbnail(Comic)
 	 * @see #displayPage(Page, JPanel)
 	 */
 	private void displayPage(Page page, JPanel comicPagePanel) {
-		// Get Scroll Pane from comicPagePanel
-		JScrollPane comicPageScrollPane = (JScrollPane) ((JPanel) rightPane.getComponentAt(rightPane.getSelectedIndex())).getComponent(0);
+		// Get Scroll Pane from comicPagePanel (the tab of the page may not be the selected one)
+		JScrollPane comicPageScrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, comicPagePanel);
 		// Get Scroll Pane width
-		// Remove all components from comicPagePanel
-		comicPagePanel.removeAll();
-		// wait for components to init
 		int width = comicPageScrollPane.getWidth();
-		// Get Comic Page Image
-		ImageIcon icon = new ImageIcon(page.getImage());
-		// Resize only image width and keep aspect ratio	
-		Image img = icon.getImage();
-		Image newimg = img.getScaledInstance(width-30, -1,  java.awt.Image.SCALE_SMOOTH);
-		icon = new ImageIcon(newimg);
-		// New Comic Page Label
-		JLabel comicPageLabel = new JLabel();
-		// Add event listener to comic page label, on mouse click
-		comicPageLabel.addMouseListener(new MouseAdapter() {
+		// the page view of the tab is created once, and reused for every page
+		PageView pageView = getPageView(comicPagePanel);
+		if (pageView == null) {
+			pageView = createPageView(comicPagePanel);
+			comicPagePanel.add(pageView, BorderLayout.CENTER);
+		}
+		// Display Comic Page
+		pageView.display(page, width-30, 0, 0);
+		// Update Comic Page Panel
+		comicPagePanel.revalidate();
+		comicPagePanel.repaint();
+	}
+
+	/**
+	 * Méthode permettant de créer la vue des pages d'un onglet, avec ses écouteurs
+	 * (clic pour ouvrir la page dans une nouvelle fenêtre, CTRL + molette pour zoomer)
+	 * @param comicPagePanel Panneau de la page de l'onglet
+	 * @return Vue des pages de l'onglet
+	 * @see PageView
+	 */
+	private PageView createPageView(JPanel comicPagePanel) {
+		PageView pageView = new PageView(prefetcher);
+		// Add event listener to page view, on mouse click
+		pageView.addMouseListener(new MouseAdapter() {
 			@Override
 			public void mouseClicked(MouseEvent e) {
 				// if left mouse button is clicked
@@ -563,90 +690,88 @@ public class MainWindow extends JFrame {
 					JPanel comicPagePanelFullscreen = new JPanel();
 					comicPagePanelFullscreen.setLayout(new BorderLayout());
 					comicPageScrollPane.setViewportView(comicPagePanelFullscreen);
-					// Add Comic Page Label to Comic Page Panel
-					JLabel comicPageLabelFullscreen = new JLabel();
-					comicPageLabelFullscreen.setIcon(comicPageLabel.getIcon());
-					comicPagePanelFullscreen.add(comicPageLabelFullscreen, BorderLayout.CENTER);
+					// Add a page view showing the same page to Comic Page Panel
+					PageView pageViewFullscreen = new PageView(null);
+					pageViewFullscreen.display(pageView.getPage(), pageView.getDisplayWidth(), 0, pageView.getRotation());
+					comicPagePanelFullscreen.add(pageViewFullscreen, BorderLayout.CENTER);
 					// Update Comic Page Frame
 					comicPageFrame.revalidate();
 					comicPageFrame.repaint();
-					// On resize, resize comic page label
+					// On resize, resize comic page
 					comicPageFrame.addComponentListener(new ComponentAdapter() {
 						@Override
 						public void componentResized(ComponentEvent e) {
-							// Get Comic Page Image
 							// Get tab pane
 							JTabbedPane tabbedPane = (JTabbedPane) comicPagePanel.getParent().getParent().getParent().getParent();
 							// Get tab name
 							String tabName = tabbedPane.getTitleAt(tabbedPane.getSelectedIndex());
 							// Get Comic
-							Comic comic = library.getComic(tabName);
+							Comic comic = getOpenedComic(tabName);
+							if (comic == null) {
+								return;
+							}
 							// Get Comic Page
 							Page page = comic.getPages().get(comic.getCurrentPage());
-							ImageIcon icon = new ImageIcon(page.getImage());
-							// Resize only image width and keep aspect ratio	
-							Image img = icon.getImage();
-							Image newimg = img.getScaledInstance(comicPageFrame.getWidth()-30, -1,  java.awt.Image.SCALE_SMOOTH);
-							icon = new ImageIcon(newimg);
-							// Set Comic Page Label Icon
-							comicPageLabelFullscreen.setIcon(icon);
-							// Update Comic Page Label
-							comicPageLabelFullscreen.revalidate();
-							comicPageLabelFullscreen.repaint();
+							// Display Comic Page at the width of the frame
+							pageViewFullscreen.display(page, comicPageFrame.getWidth()-30, 0, 0);
 						}
 					});
 				}
 			}
 		});
-		// Add event listener to comic page label, on mouse wheel scroll while CTRL is pressed
+		// Add event listener to page view, on mouse wheel scroll while CTRL is pressed
 		// Ajouté après la revue du 15/12/2022 à 10h 
-		comicPageLabel.addMouseWheelListener(new MouseWheelListener() {
+		pageView.addMouseWheelListener(new MouseWheelListener() {
 			@Override
 			public void mouseWheelMoved(MouseWheelEvent e) {
 				// if CTRL is pressed
 				if (e.isControlDown()) {
-					// Get Comic Page Image
-					// Get tab pane
-					JTabbedPane tabbedPane = (JTabbedPane) comicPagePanel.getParent().getParent().getParent().getParent();
-					// Get tab name
-					String tabName = tabbedPane.getTitleAt(tabbedPane.getSelectedIndex());
-					// Get Comic
-					Comic comic = library.getComic(tabName);
-					// Get Comic Page
-					Page page = comic.getPages().get(comic.getCurrentPage());
-					ImageIcon icon = new ImageIcon(page.getImage());
-					// Resize only image width and keep aspect ratio	
-					Image img = icon.getImage();
-					Image newimg = img.getScaledInstance(comicPageLabel.getWidth()+(e.getWheelRotation()*500), -1,  java.awt.Image.SCALE_SMOOTH);
-					icon = new ImageIcon(newimg);
-					// Set Comic Page Label Icon
-					comicPageLabel.setIcon(icon);
-					// Update Comic Page Label
-					comicPageLabel.revalidate();
-					comicPageLabel.repaint();
+					// the page is stretched while the gesture lasts and rendered again once it settles
+					pageView.zoomGesture(e.getPreciseWheelRotation(), e.getPoint());
+				} else {
+					// a component with a wheel listener does not let the scroll pane scroll, forward the event to it
+					Container scrollPane = SwingUtilities.getAncestorOfClass(JScrollPane.class, pageView);
+					if (scrollPane != null) {
+						scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(pageView, e, scrollPane));
+					}
 				}
 			}
 		});
-		// Set Comic Page Label Icon
-		comicPageLabel.setIcon(icon);
-		// Add Comic Page Label to Comic Page Panel
-		comicPagePanel.add(comicPageLabel, BorderLayout.CENTER);
-		// add event listener to scroll pane to change page when scroll further than the end of the page
+		return pageView;
+	}
 
-		// Update Comic Page Panel
-		comicPagePanel.revalidate();
-		comicPagePanel.repaint();
+	/**
+	 * Méthode permettant de récupérer la vue des pages d'un onglet
+	 * @param comicPagePanel Panneau de la page de l'onglet
+	 * @return Vue des pages de l'onglet, ou null si aucune page n'a encore été affichée
+	 * @see PageView
+	 */
+	private PageView getPageView(JPanel comicPagePanel) {
+		if (comicPagePanel.getComponentCount() == 0) {
+			return null;
+		}
+		Component component = comicPagePanel.getComponent(0);
+		return component instanceof PageView ? (PageView) component : null;
+	}
+
+	/**
+	 * Méthode permettant de signaler au préchargeur la page courante d'un comic affiché dans un onglet,
+	 * afin de préparer en arrière-plan les pages voisines à la largeur de l'onglet
+	 * @param comic Comic affiché
+	 * @param selectedTab Index de l'onglet
+	 * @see PagePrefetcher#navigate(List, int, int)
+	 */
+	private void prefetch(Comic comic, int selectedTab) {
+		JScrollPane comicPageScrollPanel = (JScrollPane) ((JPanel) rightPane.getComponentAt(selectedTab)).getComponent(0);
+		prefetcher.navigate(comic.getPages(), comic.getCurrentPage(), comicPageScrollPanel.getWidth()-30);
 	}
-	
 
 	/**
 	 * Méthode permettant d'afficher une page dans le panneau de droite
+	 * L'archive est chargée en arrière-plan : l'onglet est affiché immédiatement, puis la page courante dès qu'elle est décodée.
 	 * @param page Page à afficher
 	 * @param comicPagePanel Panneau de droite
-	 * @see ZipUtil#unzip(File, List<Page>)
-	 * @see ZipUtil#unrar(File, List<Page>)
-	 * @see #displayThumbnail(Comic, JPanel)
-	 * @see #displayPage(Page, JPanel)
+	 * @see #openComic(Comic)
 	 */
 	private void openActionPerformed() {
 		JFileChooser fileChooser = new JFileChooser();
@@ -657,73 +782,105 @@ public class MainWindow extends JFrame {
 
 		if (returnVal == JFileChooser.APPROVE_OPTION) {
 			File file = fileChooser.getSelectedFile();
-			for (Comic comic : library.getComics()) {
-				System.out.println("Checking if comic is already in library.");
-				System.out.println("Comic: " + comic.getTitle());
-				System.out.println("File: " + file.getName());
-				if (comic.getTitle().equals(file.getName())) {
-					// Display dialog box
-					JOptionPane.showMessageDialog(this, "Comic already in library. Please open it from there.", "Error", JOptionPane.ERROR_MESSAGE);
-					return;
-				}
+			System.out.println("Checking if comic is already in library.");
+			if (library.getComic(file.getName()) != null || library.getComicByPath(file.getAbsolutePath()) != null) {
+				// Display dialog box
+				JOptionPane.showMessageDialog(this, "Comic already in library. Please open it from there.", "Error", JOptionPane.ERROR_MESSAGE);
+				return;
 			}
-			JPanel newTab = new JPanel();
-			JScrollPane comicPageScrollPane = new JScrollPane();
-			JPanel comicPagePanel = new JPanel();
 			System.out.println("Opening: " + file.getName() + ".");
-			// New Tab Setup
-			{
-				newTab.setLayout(new BorderLayout());
-				rightPane.addTab(file.getName(), newTab);
-				rightPane.setSelectedIndex(rightPane.getTabCount() - 1);
-			}
-			// Comics Pane Setup
-			{
-				newTab.setLayout(new BorderLayout());
-				comicPageScrollPane.setBorder(BorderFactory.createTitledBorder("Page 1"));
-				comicPageScrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
-				comicPageScrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
-				// Speed up scrolling
-				comicPageScrollPane.getVerticalScrollBar().setUnitIncrement(16);
-				comicPageScrollPane.getHorizontalScrollBar().setUnitIncrement(16);
-				comicPageScrollPane.setViewportView(comicPagePanel);
-				comicPagePanel.setLayout(new BorderLayout());
+			openComic(new Comic(file.getName(), file.getAbsolutePath()));
+		}
+	}
+
+	/**
+	 * Méthode permettant d'ouvrir un comic dans un nouvel onglet du panneau de droite.
+	 * L'onglet est affiché immédiatement ; si les pages du comic n'ont pas encore été lues, l'archive est chargée en arrière-plan
+	 * et la page courante est affichée dès qu'elle est décodée. Un comic qui n'est pas encore dans la bibliothèque y est ajouté.
+	 * @param comic Comic à ouvrir
+	 * @see ComicLoader
+	 * @see #displayPage(Page, JPanel)
+	 */
+	private void openComic(Comic comic) {
+		JPanel newTab = new JPanel();
+		JScrollPane comicPageScrollPane = new JScrollPane();
+		JPanel comicPagePanel = new JPanel();
+		// New Tab Setup
+		{
+			newTab.setLayout(new BorderLayout());
+			rightPane.addTab(comic.getTitle(), newTab);
+			rightPane.setSelectedIndex(rightPane.getTabCount() - 1);
+		}
+		// Comics Pane Setup
+		{
+			newTab.setLayout(new BorderLayout());
+			comicPageScrollPane.setBorder(BorderFactory.createTitledBorder("Page 1"));
+			comicPageScrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+			comicPageScrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
+			// Speed up scrolling
+			comicPageScrollPane.getVerticalScrollBar().setUnitIncrement(16);
+			comicPageScrollPane.getHorizontalScrollBar().setUnitIncrement(16);
+			comicPageScrollPane.setViewportView(comicPagePanel);
+			comicPagePanel.setLayout(new BorderLayout());
+		}
+		newTab.add(comicPageScrollPane, BorderLayout.CENTER);
+		// keep the archive open while the tab is, every page read shares it
+		newTab.putClientProperty(JTabbedPaneCloseButton.RESOURCE_PROPERTY, ZipArchive.retain(new File(comic.getPath())));
+		// lay out the new tab now, the current page is rendered at its width
+		rightPane.validate();
+		if (comic.isLoaded()) {
+			// Display Comic Page
+			displayPage(comic.getPages().get(comic.getCurrentPage()), comicPagePanel);
+			prefetch(comic, rightPane.getSelectedIndex());
+			return;
+		}
+		// Placeholder and progress until the comic is loaded
+		JLabel placeholder = new JLabel("Loading " + comic.getTitle() + "...", SwingConstants.CENTER);
+		comicPagePanel.add(placeholder, BorderLayout.CENTER);
+		JProgressBar progressBar = new JProgressBar(0, 100);
+		progressBar.setStringPainted(true);
+		newTab.add(progressBar, BorderLayout.SOUTH);
+		// Load Comic in the background, the loading is cancelled if the tab is closed
+		int savedPageCount = comic.getPageCount();
+		ComicLoader loader = new ComicLoader(comic, comicPageScrollPane.getWidth()-30) {
+			@Override
+			protected void opened(Comic openedComic) {
+				if (library.getComic(openedComic.getTitle()) == null) {
+					library.addComic(openedComic);
+					updateLibrary();
+					// Display New Comic in Library
+					displayThumbnail(openedComic);
+				}
+				// Display Comic in New Tab
+				comicPagePanel.remove(placeholder);
+				displayPage(openedComic.getPages().get(openedComic.getCurrentPage()), comicPagePanel);
+				prefetch(openedComic, rightPane.indexOfComponent(newTab));
 			}
-			newTab.add(comicPageScrollPane, BorderLayout.CENTER);
-			try {
-				List<Page> pages = new ArrayList<Page>();
-				if (file.getName().endsWith(".cbz")) {
-					ZipUtil.unzip(file, pages);
-				} else if (file.getName().endsWith(".cbr")) {
-					ZipUtil.unrar(file, pages);
+
+			@Override
+			protected void loaded(Comic loadedComic) {
+				newTab.remove(progressBar);
+				newTab.revalidate();
+				// save the page count, only the comics are written to the library file
+				if (loadedComic.getPageCount() != savedPageCount) {
+					updateLibrary();
 				}
-				Comic unzippedComic = new Comic(file.getName(), file.getAbsolutePath(), pages);
-				library.addComic(unzippedComic);
-				updateLibrary();
-			} catch (IOException e) {
-				e.printStackTrace();
-			} catch (RarException e) {
-				e.printStackTrace();
 			}
-			// Display New Comic in Library
-			{
-				displayThumbnail(library.getComic(file.getName()), thumbnailsPanel);
+
+			@Override
+			protected void failed(Throwable cause) {
+				cause.printStackTrace();
+				rightPane.remove(newTab);
+				JOptionPane.showMessageDialog(MainWindow.this, "Could not open " + comic.getTitle() + ".", "Error", JOptionPane.ERROR_MESSAGE);
 			}
-			// Display Comic in New Tab
-			{
-				// Get Comic
-				System.out.println(file.getName());
-				// Print Pages Ids to console
-				for (int i = 0; i < library.getComic(file.getName()).getPages().size(); i++) {
-					System.out.println(library.getComic(file.getName()).getPages().get(i).getId());
-				}
-				Comic comic = library.getComic(file.getName());
-				// Get Comic Page
-				Page page = comic.getPages().get(comic.getCurrentPage());
-				// Display Comic Page
-				displayPage(page, comicPagePanel);
+		};
+		loader.addPropertyChangeListener(e -> {
+			if ("progress".equals(e.getPropertyName())) {
+				progressBar.setValue((Integer) e.getNewValue());
 			}
-		}
+		});
+		newTab.putClientProperty(JTabbedPaneCloseButton.TASK_PROPERTY, loader);
+		loader.execute();
 	}
 
 	/**
@@ -735,19 +892,12 @@ public class MainWindow extends JFrame {
 		int selectedTab = rightPane.getSelectedIndex();
 		// get selected tab title
 		String selectedTabTitle = rightPane.getTitleAt(selectedTab);
+		// remove comic thumbnail from left pane
+		thumbnailsModel.removeElement(library.getComic(selectedTabTitle));
 		// remove comic from library
 		library.removeComic(selectedTabTitle);
 		// remove comic from right pane
 		rightPane.remove(rightPane.getSelectedIndex());
-		// remove comic thumbnail from left pane
-		// get component index 
-		int componentIndex = 0;
-		for (int i = 0; i < thumbnailsPanel.getComponentCount(); i++) {
-			if (thumbnailsPanel.getComponent(i).getName().equals(selectedTabTitle)) {
-				componentIndex = i;
-			}
-		}
-		thumbnailsPanel.remove(thumbnailsPanel.getComponent(componentIndex));
 		// update library
 		updateLibrary();
 	}
@@ -763,8 +913,11 @@ public class MainWindow extends JFrame {
 		int selectedTab = rightPane.getSelectedIndex();
 		// get selected tab title
 		String selectedTabTitle = rightPane.getTitleAt(selectedTab);
-		// save comic current page
-		updateComic(selectedTabTitle, library.getComic(selectedTabTitle).getCurrentPage());
+		// save comic current page, unless it is still loading
+		Comic comic = getOpenedComic(selectedTabTitle);
+		if (comic != null) {
+			updateComic(selectedTabTitle, comic.getCurrentPage());
+		}
 		// Close Tab
 		rightPane.remove(rightPane.getSelectedIndex());
 	}
@@ -777,6 +930,8 @@ public class MainWindow extends JFrame {
 	private void exitActionPerformed() {
 		// Close all tabs
 		closeAllTabs();
+		// write pending library changes
+		libraryWriter.close();
 		// Exit
 		System.exit(0);
 	}
@@ -785,10 +940,7 @@ public class MainWindow extends JFrame {
 	 * Méthode permettant d'annuler la rotation d'une page
 	 */
 	private void noRotationActionPerformed() {
-		// get selected tab
-		int selectedTab = rightPane.getSelectedIndex();
-		// set image icon to original image icon
-		((JLabel) ((JPanel) ((JScrollPane) ((JPanel) rightPane.getComponentAt(selectedTab)).getComponent(0)).getViewport().getView()).getComponent(0)).setIcon(((JLabel) ((JPanel) ((JScrollPane) ((JPanel) rightPane.getComponentAt(selectedTab)).getComponent(0)).getViewport().getView()).getComponent(0)).getIcon());
+		rotateCurrentPage(0);
 	}
 
 	/**
@@ -796,6 +948,22 @@ public class MainWindow extends JFrame {
 	 * @param e ActionEvent
 	 */
 	private void RotationActionPerformed(ActionEvent e) {
+		if (e.getActionCommand().equals("90°")) {
+			rotateCurrentPage(90);
+		} else if (e.getActionCommand().equals("180°")) {
+			rotateCurrentPage(180);
+		} else if (e.getActionCommand().equals("270°")) {
+			rotateCurrentPage(270);
+		}
+	}
+
+	/**
+	 * Méthode permettant d'afficher la page courante de l'onglet sélectionné tournée d'un angle donné,
+	 * à la même largeur que la page affichée. Le rendu tourné est pris dans le cache des rendus.
+	 * @param rotation Rotation en degrés par rapport à la page d'origine (0, 90, 180 ou 270)
+	 * @see PageView#display(Page, int, int, int)
+	 */
+	private void rotateCurrentPage(int rotation) {
 		// get selected tab
 		int selectedTab = rightPane.getSelectedIndex();
 		// get panel from selected tab
@@ -804,32 +972,20 @@ public class MainWindow extends JFrame {
 		JScrollPane scrollPane = (JScrollPane) panel.getComponent(0);
 		// get panel from scroll pane
 		JPanel pagePanel = (JPanel) scrollPane.getViewport().getView();
-		// get image label from panel
-		JLabel imageLabel = (JLabel) pagePanel.getComponent(0);
-		// get image icon from image label
-		ImageIcon icon = (ImageIcon) imageLabel.getIcon();
-		// rotate image icon by e degrees
-		Image img = icon.getImage();
-		int width = img.getWidth(null);
-		int height = img.getHeight(null); 
-		System.out.println(width + " " + height);
-		// put newimg in a buffered image
-		BufferedImage bimage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-		AffineTransform tx = new AffineTransform();
-		if (e.getActionCommand().equals("90°")) {
-			tx.rotate(Math.toRadians(90), width/2, height/2);
-		} else if (e.getActionCommand().equals("180°")) {
-			tx.rotate(Math.toRadians(180), width/2, height/2);
-		} else if (e.getActionCommand().equals("270°")) {
-			tx.rotate(Math.toRadians(270), width/2, height/2);
+		// get page view from panel
+		PageView pageView = getPageView(pagePanel);
+		// very tall pages displayed strip by strip can not be rotated
+		if (pageView == null || PageView.isTall(pageView.getPage())) {
+			return;
 		}
-		AffineTransformOp op = new AffineTransformOp(tx, AffineTransformOp.TYPE_BILINEAR);
-		BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-		op.filter(bimage, out);
-		img = out;
-		icon = new ImageIcon(img);
-		// update image icon
-		imageLabel.setIcon(icon);
+		// get comic page
+		Comic comic = getOpenedComic(rightPane.getTitleAt(selectedTab));
+		if (comic == null) {
+			return;
+		}
+		Page page = comic.getPages().get(comic.getCurrentPage());
+		// rotate the page, keeping its width before rotation
+		pageView.display(page, pageView.getDisplayWidth(), 0, rotation);
 	}
 
 	/**
@@ -843,10 +999,13 @@ public class MainWindow extends JFrame {
 		int selectedTab = rightPane.getSelectedIndex();
 		// get selected tab title
 		String selectedTabTitle = rightPane.getTitleAt(selectedTab);
+		// get comic, nothing is done until its pages are loaded
+		Comic comic = getOpenedComic(selectedTabTitle);
+		if (comic == null) {
+			return;
+		}
 		// save comic current page
-		updateComic(selectedTabTitle, library.getComic(selectedTabTitle).getCurrentPage());
-		// get comic
-		Comic comic = library.getComic(selectedTabTitle);
+		updateComic(selectedTabTitle, comic.getCurrentPage());
 		if (comic.getCurrentPage()+1 >= comic.getPageCount()) {
 			// Display error message popup
 			JOptionPane.showMessageDialog(null, "This is the last page", "Error", JOptionPane.ERROR_MESSAGE);
@@ -856,25 +1015,14 @@ public class MainWindow extends JFrame {
 			comic.nextPage();
 			// get comic page
 			Page page = comic.getPages().get(comic.getCurrentPage());
-			// get comic page image
-			ImageIcon icon = new ImageIcon(page.getImage());
-			// resize only image width and keep aspect ratio
-			Image img = icon.getImage();
+			// prepare the neighbouring pages in the background
+			prefetch(comic, selectedTab);
 			// get comic page scroll panel 
 			JScrollPane comicPageScrollPanel = (JScrollPane) ((JPanel) rightPane.getComponentAt(selectedTab)).getComponent(0);
-			// get comic page scroll panel width
-			int width = comicPageScrollPanel.getWidth();
-			Image newimg = img.getScaledInstance(width-30, -1,  java.awt.Image.SCALE_SMOOTH);
-			icon = new ImageIcon(newimg);
 			// get comic page panel
 			JPanel comicPagePanel = (JPanel) comicPageScrollPanel.getViewport().getView();
-			// get comic page label from comic page panel
-			JLabel comicPageLabel = (JLabel) comicPagePanel.getComponent(0);
-			// set comic page label icon
-			comicPageLabel.setIcon(icon);
-			// update comic page panel
-			comicPagePanel.revalidate();
-			comicPagePanel.repaint();
+			// display comic page, reusing the page view of the tab
+			displayPage(page, comicPagePanel);
 			updateComic(selectedTabTitle, comic.getCurrentPage());
 		}
 	}
@@ -890,10 +1038,13 @@ public class MainWindow extends JFrame {
 		int selectedTab = rightPane.getSelectedIndex();
 		// get selected tab title
 		String selectedTabTitle = rightPane.getTitleAt(selectedTab);
+		// get comic, nothing is done until its pages are loaded
+		Comic comic = getOpenedComic(selectedTabTitle);
+		if (comic == null) {
+			return;
+		}
 		// save comic current page
-		updateComic(selectedTabTitle, library.getComic(selectedTabTitle).getCurrentPage());
-		// get comic
-		Comic comic = library.getComic(selectedTabTitle);
+		updateComic(selectedTabTitle, comic.getCurrentPage());
 		if (comic.getCurrentPage()-1 < 0) {
 			// Display error message popup
 			JOptionPane.showMessageDialog(null, "This is the first page", "Error", JOptionPane.ERROR_MESSAGE);
@@ -903,25 +1054,14 @@ public class MainWindow extends JFrame {
 			comic.previousPage();
 			// get comic page
 			Page page = comic.getPages().get(comic.getCurrentPage());
-			// get comic page image
-			ImageIcon icon = new ImageIcon(page.getImage());
-			// resize only image width and keep aspect ratio
-			Image img = icon.getImage();
+			// prepare the neighbouring pages in the background
+			prefetch(comic, selectedTab);
 			// get comic page scroll panel 
 			JScrollPane comicPageScrollPanel = (JScrollPane) ((JPanel) rightPane.getComponentAt(selectedTab)).getComponent(0);
-			// get comic page scroll panel width
-			int width = comicPageScrollPanel.getWidth();
-			Image newimg = img.getScaledInstance(width-30, -1,  java.awt.Image.SCALE_SMOOTH);
-			icon = new ImageIcon(newimg);
 			// get comic page panel
 			JPanel comicPagePanel = (JPanel) comicPageScrollPanel.getViewport().getView();
-			// get comic page label from comic page panel
-			JLabel comicPageLabel = (JLabel) comicPagePanel.getComponent(0);
-			// set comic page label icon
-			comicPageLabel.setIcon(icon);
-			// update comic page panel
-			comicPagePanel.revalidate();
-			comicPagePanel.repaint();
+			// display comic page, reusing the page view of the tab
+			displayPage(page, comicPagePanel);
 			updateComic(selectedTabTitle, comic.getCurrentPage());
 		}
 	}
@@ -937,33 +1077,25 @@ public class MainWindow extends JFrame {
 		int selectedTab = rightPane.getSelectedIndex();
 		// get selected tab title
 		String selectedTabTitle = rightPane.getTitleAt(selectedTab);
+		// get comic, nothing is done until its pages are loaded
+		Comic comic = getOpenedComic(selectedTabTitle);
+		if (comic == null) {
+			return;
+		}
 		// save comic current page
-		updateComic(selectedTabTitle, library.getComic(selectedTabTitle).getCurrentPage());
-		// get comic
-		Comic comic = library.getComic(selectedTabTitle);
+		updateComic(selectedTabTitle, comic.getCurrentPage());
 		// go to first page 
 		comic.setCurrentPage(0);
 		// get comic page
 		Page page = comic.getPages().get(comic.getCurrentPage());
-		// get comic page image
-		ImageIcon icon = new ImageIcon(page.getImage());
-		// resize only image width and keep aspect ratio
-		Image img = icon.getImage();
+		// prepare the neighbouring pages in the background
+		prefetch(comic, selectedTab);
 		// get comic page scroll panel 
 		JScrollPane comicPageScrollPanel = (JScrollPane) ((JPanel) rightPane.getComponentAt(selectedTab)).getComponent(0);
-		// get comic page scroll panel width
-		int width = comicPageScrollPanel.getWidth();
-		Image newimg = img.getScaledInstance(width-30, -1,  java.awt.Image.SCALE_SMOOTH);
-		icon = new ImageIcon(newimg);
 		// get comic page panel
 		JPanel comicPagePanel = (JPanel) comicPageScrollPanel.getViewport().getView();
-		// get comic page label from comic page panel
-		JLabel comicPageLabel = (JLabel) comicPagePanel.getComponent(0);
-		// set comic page label icon
-		comicPageLabel.setIcon(icon);
-		// update comic page panel
-		comicPagePanel.revalidate();
-		comicPagePanel.repaint();
+		// display comic page, reusing the page view of the tab
+		displayPage(page, comicPagePanel);
 		updateComic(selectedTabTitle, comic.getCurrentPage());
 	}
 
@@ -978,31 +1110,25 @@ public class MainWindow extends JFrame {
 		int selectedTab = rightPane.getSelectedIndex();
 		// get selected tab title
 		String selectedTabTitle = rightPane.getTitleAt(selectedTab);
+		// get comic, nothing is done until its pages are loaded
+		Comic comic = getOpenedComic(selectedTabTitle);
+		if (comic == null) {
+			return;
+		}
 		// save comic current page
-		updateComic(selectedTabTitle, library.getComic(selectedTabTitle).getCurrentPage());
-		// get comic
-		Comic comic = library.getComic(selectedTabTitle);
+		updateComic(selectedTabTitle, comic.getCurrentPage());
 		// go to last page 
 		comic.setCurrentPage(comic.getPages().size() - 1);
 		// get comic page
 		Page page = comic.getPages().get(comic.getCurrentPage());
-		// get comic page image
-		ImageIcon icon = new ImageIcon(page.getImage());
-		// resize only image width and keep aspect ratio
-		Image img = icon.getImage();
+		// prepare the neighbouring pages in the background
+		prefetch(comic, selectedTab);
 		// get comic page scroll panel 
 		JScrollPane comicPageScrollPanel = (JScrollPane) ((JPanel) rightPane.getComponentAt(selectedTab)).getComponent(0);
-		Image newimg = img.getScaledInstance(600, -1,  java.awt.Image.SCALE_SMOOTH);
-		icon = new ImageIcon(newimg);
 		// get comic page panel
 		JPanel comicPagePanel = (JPanel) comicPageScrollPanel.getViewport().getView();
-		// get comic page label from comic page panel
-		JLabel comicPageLabel = (JLabel) comicPagePanel.getComponent(0);
-		// set comic page label icon
-		comicPageLabel.setIcon(icon);
-		// update comic page panel
-		comicPagePanel.revalidate();
-		comicPagePanel.repaint();
+		// display comic page, reusing the page view of the tab
+		displayPage(page, comicPagePanel);
 		updateComic(selectedTabTitle, comic.getCurrentPage());
 	}
 
@@ -1014,8 +1140,11 @@ public class MainWindow extends JFrame {
 		int selectedTab = rightPane.getSelectedIndex();
 		// get selected tab title
 		String selectedTabTitle = rightPane.getTitleAt(selectedTab);
-		// get comic
-		Comic comic = library.getComic(selectedTabTitle);
+		// get comic, nothing is done until its pages are loaded
+		Comic comic = getOpenedComic(selectedTabTitle);
+		if (comic == null) {
+			return;
+		}
 		// Ask user for page number
 		String input = JOptionPane.showInputDialog("Page number :");
 		// if user input is not null
@@ -1025,29 +1154,19 @@ public class MainWindow extends JFrame {
 				// if user input is a valid page number
 				if (Integer.parseInt(input) <= comic.getPages().size() && Integer.parseInt(input) > 0) {
 					// save comic current page
-					updateComic(selectedTabTitle, library.getComic(selectedTabTitle).getCurrentPage());
+					updateComic(selectedTabTitle, comic.getCurrentPage());
 					// go to page
 					comic.setCurrentPage(Integer.parseInt(input) - 1);
 					// get comic page
 					Page page = comic.getPages().get(comic.getCurrentPage());
-					// get comic page image
-					ImageIcon icon = new ImageIcon(page.getImage());
-					// resize only image width and keep aspect ratio
-					Image img = icon.getImage();
+					// prepare the neighbouring pages in the background
+					prefetch(comic, selectedTab);
 					// get comic page scroll panel 
 					JScrollPane comicPageScrollPanel = (JScrollPane) ((JPanel) rightPane.getComponentAt(selectedTab)).getComponent(0);
-					int width = comicPageScrollPanel.getWidth();
-					Image newimg = img.getScaledInstance(width-30, -1,  java.awt.Image.SCALE_SMOOTH);
-					icon = new ImageIcon(newimg);
 					// get comic page panel
 					JPanel comicPagePanel = (JPanel) comicPageScrollPanel.getViewport().getView();
-					// get comic page label from comic page panel
-					JLabel comicPageLabel = (JLabel) comicPagePanel.getComponent(0);
-					// set comic page label icon
-					comicPageLabel.setIcon(icon);
-					// update comic page panel
-					comicPagePanel.revalidate();
-					comicPagePanel.repaint();
+					// display comic page, reusing the page view of the tab
+					displayPage(page, comicPagePanel);
 					updateComic(selectedTabTitle, comic.getCurrentPage());
 				} else {
 					JOptionPane.showMessageDialog(null, "Invalid page number", "Error", JOptionPane.ERROR_MESSAGE);
@@ -1071,19 +1190,21 @@ public class MainWindow extends JFrame {
 		JScrollPane comicPageScrollPanel = (JScrollPane) ((JPanel) rightPane.getComponentAt(selectedTab)).getComponent(0);
 		// get comic page panel
 		JPanel comicPagePanel = (JPanel) comicPageScrollPanel.getViewport().getView();
-		// get comic page label from comic page panel
-		JLabel comicPageLabel = (JLabel) comicPagePanel.getComponent(0);
+		// get page view from comic page panel
+		PageView pageView = getPageView(comicPagePanel);
+		if (pageView == null) {
+			return;
+		}
 		// get comic
-		Comic comic = library.getComic(selectedTabTitle);
+		Comic comic = getOpenedComic(selectedTabTitle);
+		if (comic == null) {
+			return;
+		}
 		// get comic page
 		Page page = comic.getPages().get(comic.getCurrentPage());
-		// get comic page icon from panel
-		ImageIcon icon = (ImageIcon) comicPageLabel.getIcon();
 		// zoom in
-		Image newimg = page.getImage().getScaledInstance((int) (icon.getIconWidth() * 1.1), -1,  java.awt.Image.SCALE_SMOOTH);
-		icon = new ImageIcon(newimg);
-		// set comic page label icon
-		comicPageLabel.setIcon(icon);
+		int newWidth = (int) (pageView.getDisplayWidth() * 1.1);
+		pageView.display(page, newWidth, 0, pageView.getRotation());
 		// update comic page panel
 		comicPagePanel.revalidate();
 		comicPagePanel.repaint();
@@ -1101,19 +1222,21 @@ public class MainWindow extends JFrame {
 		JScrollPane comicPageScrollPanel = (JScrollPane) ((JPanel) rightPane.getComponentAt(selectedTab)).getComponent(0);
 		// get comic page panel
 		JPanel comicPagePanel = (JPanel) comicPageScrollPanel.getViewport().getView();
-		// get comic page label from comic page panel
-		JLabel comicPageLabel = (JLabel) comicPagePanel.getComponent(0);
+		// get page view from comic page panel
+		PageView pageView = getPageView(comicPagePanel);
+		if (pageView == null) {
+			return;
+		}
 		// get comic
-		Comic comic = library.getComic(selectedTabTitle);
+		Comic comic = getOpenedComic(selectedTabTitle);
+		if (comic == null) {
+			return;
+		}
 		// get comic page
 		Page page = comic.getPages().get(comic.getCurrentPage());
-		// get comic page icon from panel
-		ImageIcon icon = (ImageIcon) comicPageLabel.getIcon();
 		// zoom in
-		Image newimg = page.getImage().getScaledInstance((int) (icon.getIconWidth() * 0.9), -1,  java.awt.Image.SCALE_SMOOTH);
-		icon = new ImageIcon(newimg);
-		// set comic page label icon
-		comicPageLabel.setIcon(icon);
+		int newWidth = (int) (pageView.getDisplayWidth() * 0.9);
+		pageView.display(page, newWidth, 0, pageView.getRotation());
 		// update comic page panel
 		comicPagePanel.revalidate();
 		comicPagePanel.repaint();
@@ -1131,21 +1254,23 @@ public class MainWindow extends JFrame {
 		JScrollPane comicPageScrollPanel = (JScrollPane) ((JPanel) rightPane.getComponentAt(selectedTab)).getComponent(0);
 		// get comic page panel
 		JPanel comicPagePanel = (JPanel) comicPageScrollPanel.getViewport().getView();
-		// get comic page label from comic page panel
-		JLabel comicPageLabel = (JLabel) comicPagePanel.getComponent(0);
+		// get page view from comic page panel
+		PageView pageView = getPageView(comicPagePanel);
+		if (pageView == null) {
+			return;
+		}
 		// get comic
-		Comic comic = library.getComic(selectedTabTitle);
+		Comic comic = getOpenedComic(selectedTabTitle);
+		if (comic == null) {
+			return;
+		}
 		// get comic page
 		Page page = comic.getPages().get(comic.getCurrentPage());
-		// get comic page icon from panel
-		ImageIcon icon = (ImageIcon) comicPageLabel.getIcon();
 		// get custom zoom value
 		String customZoomValue = JOptionPane.showInputDialog("Enter custom zoom value (0.1 - 10.0):");
 		// zoom custom
-		Image newimg = page.getImage().getScaledInstance((int) (icon.getIconWidth() * Double.parseDouble(customZoomValue)), -1,  java.awt.Image.SCALE_SMOOTH);
-		icon = new ImageIcon(newimg);
-		// set comic page label icon
-		comicPageLabel.setIcon(icon);
+		int newWidth = (int) (pageView.getDisplayWidth() * Double.parseDouble(customZoomValue));
+		pageView.display(page, newWidth, 0, pageView.getRotation());
 		// update comic page panel
 		comicPagePanel.revalidate();
 		comicPagePanel.repaint();
@@ -1163,22 +1288,29 @@ public class MainWindow extends JFrame {
 		JScrollPane comicPageScrollPanel = (JScrollPane) ((JPanel) rightPane.getComponentAt(selectedTab)).getComponent(0);
 		// get comic page panel
 		JPanel comicPagePanel = (JPanel) comicPageScrollPanel.getViewport().getView();
-		// get comic page label from comic page panel
-		JLabel comicPageLabel = (JLabel) comicPagePanel.getComponent(0);
+		// get page view from comic page panel
+		PageView pageView = getPageView(comicPagePanel);
+		if (pageView == null) {
+			return;
+		}
 		// get comic
-		Comic comic = library.getComic(selectedTabTitle);
+		Comic comic = getOpenedComic(selectedTabTitle);
+		if (comic == null) {
+			return;
+		}
 		// get comic page
 		Page page = comic.getPages().get(comic.getCurrentPage());
-		// get comic page icon from panel
-		ImageIcon icon = (ImageIcon) comicPageLabel.getIcon();
 		// get scroll pane width
 		int scrollPaneWidth = comicPageScrollPanel.getWidth();
 		// get scroll pane height
 		int scrollPaneHeight = comicPageScrollPanel.getHeight();
-		// get image width
-		int imageWidth = page.getImage().getWidth(null);
-		// get image height
-		int imageHeight = page.getImage().getHeight(null);
+		// get image width and height, probed from the page header without decoding it
+		Dimension imageSize = getPageSize(page);
+		if (imageSize == null) {
+			return;
+		}
+		int imageWidth = imageSize.width;
+		int imageHeight = imageSize.height;
 		// get image aspect ratio
 		double imageAspectRatio = (double) imageWidth / (double) imageHeight;
 		// get scroll pane aspect ratio
@@ -1190,15 +1322,31 @@ public class MainWindow extends JFrame {
 		System.out.println("scroll pane width: " + scrollPaneWidth);
 		System.out.println("scroll pane height: " + scrollPaneHeight);
 		System.out.println("scroll pane aspect ratio: " + scrollPaneAspectRatio);
-		Image newimg = page.getImage().getScaledInstance(scrollPaneWidth-20, -1,  java.awt.Image.SCALE_SMOOTH);
-		icon = new ImageIcon(newimg);
-		// set comic page label icon
-		comicPageLabel.setIcon(icon);
+		int targetWidth = scrollPaneWidth-20;
+		pageView.display(page, targetWidth, (int) (targetWidth / imageAspectRatio), 0);
 		// update comic page panel
 		comicPagePanel.revalidate();
 		comicPagePanel.repaint();
 	}
 
+	/**
+	 * Méthode permettant de connaître les dimensions d'une page en sondant l'en-tête de son entrée ;
+	 * la page n'est décodée que si le sondage a échoué.
+	 * @param page Page dont les dimensions sont demandées
+	 * @return Dimensions de la page, ou null si elle n'a pas pu être lue
+	 */
+	private static Dimension getPageSize(Page page) {
+		try {
+			if (ZipUtil.probe(page)) {
+				return new Dimension(page.getWidth(), page.getHeight());
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		Image image = page.getImage();
+		return image == null ? null : new Dimension(image.getWidth(null), image.getHeight(null));
+	}
+
 	/**
 	 * Méthode permettant de mettre la page courante de l'onglet sélectionné à la taille la hauteur de l'onglet
 	 */
@@ -1211,22 +1359,29 @@ public class MainWindow extends JFrame {
 		JScrollPane comicPageScrollPanel = (JScrollPane) ((JPanel) rightPane.getComponentAt(selectedTab)).getComponent(0);
 		// get comic page panel
 		JPanel comicPagePanel = (JPanel) comicPageScrollPanel.getViewport().getView();
-		// get comic page label from comic page panel
-		JLabel comicPageLabel = (JLabel) comicPagePanel.getComponent(0);
+		// get page view from comic page panel
+		PageView pageView = getPageView(comicPagePanel);
+		if (pageView == null) {
+			return;
+		}
 		// get comic
-		Comic comic = library.getComic(selectedTabTitle);
+		Comic comic = getOpenedComic(selectedTabTitle);
+		if (comic == null) {
+			return;
+		}
 		// get comic page
 		Page page = comic.getPages().get(comic.getCurrentPage());
-		// get comic page icon from panel
-		ImageIcon icon = (ImageIcon) comicPageLabel.getIcon();
 		// get scroll pane width
 		int scrollPaneWidth = comicPageScrollPanel.getWidth();
 		// get scroll pane height
 		int scrollPaneHeight = comicPageScrollPanel.getHeight();
-		// get image width
-		int imageWidth = page.getImage().getWidth(null);
-		// get image height
-		int imageHeight = page.getImage().getHeight(null);
+		// get image width and height, probed from the page header without decoding it
+		Dimension imageSize = getPageSize(page);
+		if (imageSize == null) {
+			return;
+		}
+		int imageWidth = imageSize.width;
+		int imageHeight = imageSize.height;
 		// get image aspect ratio
 		double imageAspectRatio = (double) imageWidth / (double) imageHeight;
 		// get scroll pane aspect ratio
@@ -1238,10 +1393,9 @@ public class MainWindow extends JFrame {
 		System.out.println("scroll pane height: " + scrollPaneHeight);
 		System.out.println("scroll pane aspect ratio: " + scrollPaneAspectRatio);
 		// zoom to height
-		Image newimg = page.getImage().getScaledInstance(-1, scrollPaneHeight-50,  java.awt.Image.SCALE_SMOOTH);
-		icon = new ImageIcon(newimg);
-		// set comic page label icon
-		comicPageLabel.setIcon(icon);
+		int targetHeight = scrollPaneHeight-50;
+		int targetWidth = (int) (targetHeight * imageAspectRatio);
+		pageView.display(page, targetWidth, targetHeight, 0);
 		// update comic page panel
 		comicPagePanel.revalidate();
 		comicPagePanel.repaint();
@@ -1259,19 +1413,20 @@ public class MainWindow extends JFrame {
 		JScrollPane comicPageScrollPanel = (JScrollPane) ((JPanel) rightPane.getComponentAt(selectedTab)).getComponent(0);
 		// get comic page panel
 		JPanel comicPagePanel = (JPanel) comicPageScrollPanel.getViewport().getView();
-		// get comic page label from comic page panel
-		JLabel comicPageLabel = (JLabel) comicPagePanel.getComponent(0);
+		// get page view from comic page panel
+		PageView pageView = getPageView(comicPagePanel);
+		if (pageView == null) {
+			return;
+		}
 		// get comic
-		Comic comic = library.getComic(selectedTabTitle);
+		Comic comic = getOpenedComic(selectedTabTitle);
+		if (comic == null) {
+			return;
+		}
 		// get comic page
 		Page page = comic.getPages().get(comic.getCurrentPage());
-		// get comic page icon from panel
-		ImageIcon icon = (ImageIcon) comicPageLabel.getIcon();
 		// zoom to original fit
-		Image newimg = page.getImage().getScaledInstance(-1, -1,  java.awt.Image.SCALE_SMOOTH);
-		icon = new ImageIcon(newimg);
-		// set comic page label icon
-		comicPageLabel.setIcon(icon);
+		pageView.display(page, 0, 0, 0);
 		// update comic page panel
 		comicPagePanel.revalidate();
 		comicPagePanel.repaint();
@@ -1351,7 +1506,11 @@ public class MainWindow extends JFrame {
 			} else {
 				// get tab title
 				String tabTitle = rightPane.getTitleAt(i);
-				updateComic(tabTitle, library.getComic(tabTitle).getCurrentPage());
+				// comics still loading have no progress to save
+				Comic comic = getOpenedComic(tabTitle);
+				if (comic != null) {
+					updateComic(tabTitle, comic.getCurrentPage());
+				}
 				rightPane.remove(i);
 			}
 		}
@@ -1363,10 +1522,19 @@ public class MainWindow extends JFrame {
 	 * @param e Evenement de fermeture de la fenêtre
 	 */
 	public void windowClosing(WindowEvent e) {
+		// print pages caches counters, to tune their budgets
+		System.out.println(DecodedImageCache.getInstance());
+		System.out.println(ZipUtil.getCompressedPageCache());
+		System.out.println(RenditionCache.getInstance());
+		System.out.println(prefetcher);
+		System.out.println(libraryWriter);
+		prefetcher.clear();
 		// save library
 		updateLibrary();
 		// close all tabs
 		closeAllTabs();
+		// write pending library changes
+		libraryWriter.close();
 		// dispose dialogs
 		// dispose shortcuts dialog
 		shortcutsDialog.dispose();
@@ -1391,7 +1559,10 @@ public class MainWindow extends JFrame {
 			return;
 		}
 		// get comic
-		Comic comic = library.getComic(selectedTabTitle);
+		Comic comic = getOpenedComic(selectedTabTitle);
+		if (comic == null) {
+			return;
+		}
 		// get key code
 		int keyCode = e.getKeyCode();
 		// if key code is right arrow
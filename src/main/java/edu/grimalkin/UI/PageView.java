@@ -0,0 +1,710 @@
+package edu.grimalkin.ui;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+import edu.grimalkin.data.Page;
+import edu.grimalkin.util.DecodedImageCache;
+import edu.grimalkin.util.ImageDecoder;
+import edu.grimalkin.util.ImageScaler;
+import edu.grimalkin.util.PagePrefetcher;
+import edu.grimalkin.util.RenditionCache;
+import edu.grimalkin.util.ZipUtil;
+
+/**
+ * Une classe "PageView" représentant la vue d'une page dans un onglet, réutilisée d'une page à l'autre.
+ * Seule la partie visible de la page (dans le JScrollPane) est dessinée, selon trois modes :
+ * - jusqu'à la taille réelle de la page, un rendu à la taille d'affichage est pris dans le cache des rendus
+ *   (rapide pendant l'interaction, puis en qualité une fois l'affichage au repos) ;
+ * - au-delà de la taille réelle (zoom avant), la page est découpée en tuiles de taille fixe, rendues à la demande
+ *   sur le pool de décodage et conservées par niveau de zoom, sans jamais créer d'image à la taille d'affichage ;
+ * - les pages très hautes (webtoon) sont découpées en bandes horizontales décodées par région (setSourceRegion),
+ *   sans jamais décoder la page en entier.
+ * Pendant un zoom à la molette, le dernier affichage est simplement étiré par une transformation de Graphics2D,
+ * autour du curseur ; la page n'est rendue à nouveau à la taille finale qu'une fois le geste terminé.
+ * La classe hérite de JComponent
+ */
+public class PageView extends JComponent {
+    /** Taille d'une tuile, en pixels d'affichage */
+    private static final int TILE_SIZE = 256;
+    /** Hauteur d'affichage approximative d'une bande des pages très hautes, en pixels */
+    private static final int STRIP_DISPLAY_HEIGHT = 512;
+    /** Nombre de rangées de tuiles (ou de bandes) préparées de part et d'autre de la zone visible */
+    private static final int TILE_MARGIN = 1;
+    /** Budget du cache des tuiles, en octets */
+    private static final long TILE_BUDGET = 64L * 1024 * 1024;
+    /** Délai sans interaction après lequel la page est rendue à nouveau en qualité, en millisecondes */
+    private static final int IDLE_DELAY = 300;
+    /** Facteur de zoom d'un cran de molette */
+    private static final double ZOOM_STEP = 1.1;
+    /** Délai sans cran de molette après lequel un geste de zoom est considéré comme terminé, en millisecondes */
+    private static final int GESTURE_DELAY = 250;
+    /** Largeur d'affichage minimale atteignable par un geste de zoom, en pixels */
+    private static final int MIN_ZOOM_WIDTH = 64;
+    /** Agrandissement maximal atteignable par un geste de zoom, par rapport à la taille réelle de la page */
+    private static final int MAX_ZOOM = 8;
+
+    /**
+     * Une énumération "Mode" des modes d'affichage d'une page
+     */
+    private enum Mode {
+        /** Rendu unique à la taille d'affichage */
+        RENDITION,
+        /** Tuiles de taille fixe, pour le zoom avant */
+        TILES,
+        /** Bandes horizontales décodées par région, pour les pages très hautes */
+        STRIPS
+    }
+
+    /** Préchargeur des pages voisines, consulté avant de rendre une page (peut être null) */
+    private final PagePrefetcher prefetcher;
+    /** Tuiles et bandes rendues, toutes pages et tous niveaux de zoom confondus */
+    private final DecodedImageCache tiles = new DecodedImageCache(TILE_BUDGET);
+    /** Rendus de tuiles ou de bandes en cours, indexés par clé de tuile (accès depuis l'EDT uniquement) */
+    private final Map<String, Future<?>> pending = new HashMap<String, Future<?>>();
+    /**
+     * Clés des rendus en cours toujours attendus, consultées par le pool de décodage entre deux étapes :
+     * les rendus sont annulés sans interruption, qui fermerait les FileChannel des archives en cours de lecture
+     */
+    private final Set<String> live = ConcurrentHashMap.newKeySet();
+    /** Minuterie relancée à chaque affichage, déclenchant le rendu en qualité une fois au repos */
+    private final Timer idleTimer = new Timer(IDLE_DELAY, e -> refine());
+    /** Minuterie relancée à chaque cran de molette, déclenchant le rendu à la taille finale une fois le geste terminé */
+    private final Timer gestureTimer = new Timer(GESTURE_DELAY, e -> settle());
+
+    /** Page affichée */
+    private Page page;
+    /** Mode d'affichage de la page */
+    private Mode mode;
+    /** Largeur demandée lors de l'affichage (0 ou moins si elle est déduite de la hauteur) */
+    private int requestedWidth;
+    /** Hauteur demandée lors de l'affichage (0 ou moins si elle est déduite de la largeur) */
+    private int requestedHeight;
+    /** Largeur d'affichage de la page, avant rotation */
+    private int displayWidth;
+    /** Hauteur d'affichage de la page, avant rotation */
+    private int displayHeight;
+    /** Rotation en degrés (0, 90, 180 ou 270) */
+    private int rotation;
+    /** Génération courante : incrémentée à chaque affichage pour ignorer les rendus obsolètes (lue par le pool de décodage) */
+    private volatile int generation;
+    /** Rendu à la taille d'affichage (mode RENDITION) */
+    private BufferedImage rendition;
+    /** Image décodée en taille réelle (mode TILES), null tant qu'elle est décodée sur le pool de décodage */
+    private Image source;
+    /** Transformation des pixels de la page vers l'affichage, rotation comprise (mode TILES, null sans image décodée) */
+    private AffineTransform transform;
+    /** Facteur de sous-échantillonnage des bandes (mode STRIPS) */
+    private int factor;
+    /** Hauteur d'une bande, en pixels de la page réelle (mode STRIPS) */
+    private int stripHeight;
+    /** Facteur de zoom du geste en cours, appliqué au dernier affichage (1 en l'absence de geste) */
+    private double gestureScale = 1;
+    /** Rendu en cours de la taille finale d'un geste de zoom (peut être null) */
+    private Future<?> gestureRender;
+    /** Décodage en cours de l'image en taille réelle (mode TILES, peut être null) */
+    private Future<?> sourceRender;
+
+    /**
+     * Constructeur avec paramètres
+     * @param _prefetcher Préchargeur des pages voisines, consulté avant de rendre une page (peut être null)
+     */
+    public PageView(PagePrefetcher _prefetcher) {
+        prefetcher = _prefetcher;
+        idleTimer.setRepeats(false);
+        gestureTimer.setRepeats(false);
+        setOpaque(true);
+        setBackground(UIManager.getColor("Panel.background"));
+    }
+
+    /**
+     * Méthode permettant de savoir si une page doit être affichée par bandes
+     * @param page Page à tester
+     * @return true si la page est beaucoup plus haute que large
+     * @see Page#isTall()
+     */
+    public static boolean isTall(Page page) {
+        return page.isTall();
+    }
+
+    /**
+     * Accesseur en lecture de la page affichée
+     * @return Page affichée, ou null si aucune page n'a encore été affichée
+     */
+    public Page getPage() {return page;}
+    /**
+     * Accesseur en lecture de la largeur d'affichage
+     * @return Largeur d'affichage de la page, avant rotation
+     */
+    public int getDisplayWidth() {return displayWidth;}
+    /**
+     * Accesseur en lecture de la hauteur d'affichage
+     * @return Hauteur d'affichage de la page, avant rotation
+     */
+    public int getDisplayHeight() {return displayHeight;}
+    /**
+     * Accesseur en lecture de la rotation
+     * @return Rotation en degrés (0, 90, 180 ou 270)
+     */
+    public int getRotation() {return rotation;}
+
+    /**
+     * Méthode permettant d'afficher une page à une taille et une rotation données.
+     * Les rendus en cours de la page précédente sont annulés, et les tuiles déjà rendues restent en cache.
+     * Les pages très hautes sont toujours affichées sans rotation.
+     * @param _page Page à afficher
+     * @param width Largeur cible (0 ou moins pour la déduire de la hauteur)
+     * @param height Hauteur cible (0 ou moins pour la déduire de la largeur)
+     * @param _rotation Rotation en degrés (0, 90, 180 ou 270)
+     */
+    public void display(Page _page, int width, int height, int _rotation) {
+        page = _page;
+        requestedWidth = width;
+        requestedHeight = height;
+        rotation = _rotation;
+        generation++;
+        cancelPending(null);
+        cancelGesture();
+        if (sourceRender != null) {
+            sourceRender.cancel(false);
+            sourceRender = null;
+        }
+        rendition = null;
+        source = null;
+        transform = null;
+        if (page.getWidth() <= 0 || page.getHeight() <= 0) {
+            // pages not probed yet by the loader are probed now, a very tall page is then never decoded as a whole
+            try {
+                ZipUtil.probe(page);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        int pageWidth = page.getWidth();
+        int pageHeight = page.getHeight();
+        if (pageWidth <= 0 || pageHeight <= 0) {
+            if (page.getKey() != null) {
+                // dimensions could not be probed from the header, the page is decoded off the EDT then displayed again
+                mode = Mode.RENDITION;
+                idleTimer.stop();
+                requestDimensions();
+                repaint();
+                return;
+            }
+            // images given directly are already decoded
+            Image image = page.getImage();
+            pageWidth = image.getWidth(null);
+            pageHeight = image.getHeight(null);
+        }
+        if (width <= 0 && height <= 0) {
+            width = pageWidth;
+            height = pageHeight;
+        } else if (width <= 0) {
+            width = Math.max(1, (int) ((long) pageWidth * height / pageHeight));
+        } else if (height <= 0) {
+            height = Math.max(1, (int) ((long) pageHeight * width / pageWidth));
+        }
+        if (isTall(page)) {
+            mode = Mode.STRIPS;
+            rotation = 0;
+            displayWidth = width;
+            displayHeight = (int) ((long) pageHeight * width / pageWidth);
+            factor = ImageDecoder.subsampling(pageWidth, pageHeight, displayWidth, 0);
+            stripHeight = STRIP_DISPLAY_HEIGHT * factor;
+        } else if (width > pageWidth || height > pageHeight) {
+            mode = Mode.TILES;
+            displayWidth = width;
+            displayHeight = height;
+            if (page.getKey() == null) {
+                // images given directly are already decoded
+                setSource(page.getImage());
+            } else {
+                requestSource();
+            }
+        } else {
+            mode = Mode.RENDITION;
+            // the rendition is fast while the user is interacting, and rendered again in quality once idle
+            if (prefetcher != null && requestedHeight <= 0 && rotation == 0) {
+                rendition = prefetcher.getScaled(page, requestedWidth, ImageScaler.FAST);
+            } else {
+                rendition = RenditionCache.getInstance().get(page, requestedWidth, requestedHeight, rotation, ImageScaler.FAST);
+            }
+            boolean swap = rotation == 90 || rotation == 270;
+            displayWidth = swap ? rendition.getHeight() : rendition.getWidth();
+            displayHeight = swap ? rendition.getWidth() : rendition.getHeight();
+            idleTimer.restart();
+        }
+        setPreferredSize(new Dimension(getContentWidth(), getContentHeight()));
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Méthode permettant d'utiliser l'image décodée en taille réelle pour dessiner les tuiles (mode TILES)
+     * @param image Image de la page en taille réelle
+     */
+    private void setSource(Image image) {
+        source = image;
+        transform = new AffineTransform();
+        transform.translate(getContentWidth() / 2.0, getContentHeight() / 2.0);
+        transform.quadrantRotate(rotation / 90);
+        transform.translate(-displayWidth / 2.0, -displayHeight / 2.0);
+        transform.scale((double) displayWidth / source.getWidth(null), (double) displayHeight / source.getHeight(null));
+    }
+
+    /**
+     * Méthode permettant de décoder la page en taille réelle sur le pool de décodage (mode TILES) ;
+     * les tuiles sont dessinées une fois l'image décodée, si aucune autre page n'a été affichée entre-temps.
+     */
+    private void requestSource() {
+        int requestGeneration = generation;
+        Page requestPage = page;
+        sourceRender = ImageDecoder.getPool().submit(() -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            Image image = requestPage.getImage();
+            SwingUtilities.invokeLater(() -> {
+                if (requestGeneration == generation && image != null) {
+                    sourceRender = null;
+                    setSource(image);
+                    repaint();
+                }
+            });
+        });
+    }
+
+    /**
+     * Méthode permettant de décoder en taille réelle, sur le pool de décodage, une page dont l'en-tête n'a pas pu être sondé ;
+     * ses dimensions sont renseignées par l'image décodée, puis la page est affichée à nouveau si aucune autre page
+     * n'a été affichée entre-temps. Une page qui n'a pas pu être décodée n'est pas affichée à nouveau.
+     */
+    private void requestDimensions() {
+        int requestGeneration = generation;
+        Page requestPage = page;
+        int width = requestedWidth;
+        int height = requestedHeight;
+        int requestRotation = rotation;
+        sourceRender = ImageDecoder.getPool().submit(() -> {
+            if (requestGeneration != generation) {
+                return;
+            }
+            Image image = requestPage.getImage();
+            if (image == null) {
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (requestGeneration == generation) {
+                    sourceRender = null;
+                    if (requestPage.getWidth() <= 0 || requestPage.getHeight() <= 0) {
+                        requestPage.setWidth(image.getWidth(null));
+                        requestPage.setHeight(image.getHeight(null));
+                    }
+                    display(requestPage, width, height, requestRotation);
+                }
+            });
+        });
+    }
+
+    /**
+     * Méthode permettant de zoomer autour d'un point pendant un geste (molette).
+     * Le dernier affichage est étiré par une transformation, sans aucun rendu, et le point sous le curseur reste en place
+     * dans le JScrollPane ; la page est rendue à la taille finale hors de l'EDT une fois le geste terminé,
+     * et un cran de molette arrivant entre-temps annule ce rendu devenu obsolète.
+     * Les pages très hautes, dont l'affichage ne décode rien sur l'EDT, sont affichées directement à la nouvelle taille.
+     * @param notches Nombre de crans de molette (positif pour agrandir)
+     * @param anchor Point sous le curseur, dans le repère de la vue
+     */
+    public void zoomGesture(double notches, Point anchor) {
+        if (page == null) {
+            return;
+        }
+        double scale = gestureScale * Math.pow(ZOOM_STEP, notches);
+        int maxWidth = MAX_ZOOM * (page.getWidth() > 0 ? page.getWidth() : displayWidth);
+        scale = Math.max((double) MIN_ZOOM_WIDTH / displayWidth, Math.min((double) maxWidth / displayWidth, scale));
+        if (mode == Mode.STRIPS) {
+            display(page, (int) Math.round(displayWidth * scale), 0, 0);
+            return;
+        }
+        // a new notch makes any pending render stale
+        generation++;
+        cancelPending(null);
+        idleTimer.stop();
+        if (gestureRender != null) {
+            gestureRender.cancel(false);
+            gestureRender = null;
+        }
+        // point under the cursor, in page pixels before the gesture started
+        double oldScale = gestureScale;
+        int oldTop = Math.max(0, (getHeight() - (int) Math.round(getContentHeight() * oldScale)) / 2);
+        double anchorX = anchor.x / oldScale;
+        double anchorY = (anchor.y - oldTop) / oldScale;
+        gestureScale = scale;
+        setPreferredSize(new Dimension((int) Math.round(getContentWidth() * scale), (int) Math.round(getContentHeight() * scale)));
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, this);
+        if (viewport != null) {
+            Point position = viewport.getViewPosition();
+            Point offset = SwingUtilities.convertPoint(this, anchor, viewport.getView());
+            offset.translate(-position.x, -position.y);
+            // lay out now so that the new view position is not clamped to the old size
+            revalidate();
+            viewport.getParent().validate();
+            int top = Math.max(0, (getHeight() - (int) Math.round(getContentHeight() * scale)) / 2);
+            Point target = SwingUtilities.convertPoint(this, (int) Math.round(anchorX * scale), top + (int) Math.round(anchorY * scale), viewport.getView());
+            Dimension view = viewport.getViewSize();
+            Dimension extent = viewport.getExtentSize();
+            viewport.setViewPosition(new Point(Math.max(0, Math.min(view.width - extent.width, target.x - offset.x)),
+                Math.max(0, Math.min(view.height - extent.height, target.y - offset.y))));
+        } else {
+            revalidate();
+        }
+        repaint();
+        gestureTimer.restart();
+    }
+
+    /**
+     * Méthode appelée lorsqu'un geste de zoom est terminé : la page est préparée à la taille finale sur le pool de décodage
+     * (rendu en qualité, ou image décodée pour les tuiles), puis affichée si aucun autre cran de molette n'est arrivé.
+     */
+    private void settle() {
+        if (gestureScale == 1) {
+            return;
+        }
+        int settleGeneration = generation;
+        Page settlePage = page;
+        int width = Math.max(1, (int) Math.round(displayWidth * gestureScale));
+        int settleRotation = rotation;
+        gestureRender = ImageDecoder.getPool().submit(() -> {
+            if (settleGeneration != generation) {
+                return;
+            }
+            // the expensive part runs here, display() then finds the page in the caches
+            if (settlePage.getWidth() <= 0 || width <= settlePage.getWidth()) {
+                RenditionCache.getInstance().get(settlePage, width, 0, settleRotation, ImageScaler.QUALITY);
+            } else {
+                settlePage.getImage();
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (settleGeneration == generation) {
+                    display(settlePage, width, 0, settleRotation);
+                }
+            });
+        });
+    }
+
+    /**
+     * Méthode permettant d'abandonner le geste de zoom en cours et son rendu éventuel
+     */
+    private void cancelGesture() {
+        gestureTimer.stop();
+        gestureScale = 1;
+        if (gestureRender != null) {
+            gestureRender.cancel(false);
+            gestureRender = null;
+        }
+    }
+
+    /**
+     * Méthode permettant de calculer la largeur occupée par la page, après rotation
+     * @return Largeur occupée par la page
+     */
+    private int getContentWidth() {
+        return rotation == 90 || rotation == 270 ? displayHeight : displayWidth;
+    }
+
+    /**
+     * Méthode permettant de calculer la hauteur occupée par la page, après rotation
+     * @return Hauteur occupée par la page
+     */
+    private int getContentHeight() {
+        return rotation == 90 || rotation == 270 ? displayWidth : displayHeight;
+    }
+
+    /**
+     * Méthode appelée lorsque l'affichage est au repos : le rendu rapide est remplacé par un rendu en qualité,
+     * calculé sur le pool de décodage.
+     */
+    private void refine() {
+        if (mode != Mode.RENDITION) {
+            return;
+        }
+        int refineGeneration = generation;
+        Page refinePage = page;
+        int width = requestedWidth;
+        int height = requestedHeight;
+        int refineRotation = rotation;
+        ImageDecoder.getPool().submit(() -> {
+            if (refineGeneration != generation) {
+                return;
+            }
+            BufferedImage refined = RenditionCache.getInstance().get(refinePage, width, height, refineRotation, ImageScaler.QUALITY);
+            SwingUtilities.invokeLater(() -> {
+                // the page may have been turned or zoomed in the meantime
+                if (refineGeneration == generation && refined != rendition) {
+                    rendition = refined;
+                    repaint();
+                }
+            });
+        });
+    }
+
+    /**
+     * Méthode permettant de dessiner la partie visible de la page.
+     * Les tuiles ou bandes manquantes sont demandées au pool de décodage (les tuiles une fois la page décodée en taille réelle,
+     * elle aussi sur le pool) ; en attendant, les tuiles sont dessinées
+     * directement depuis l'image décodée (au plus proche voisin) et les bandes sont laissées vides.
+     * Les rendus en cours des tuiles éloignées de la zone visible sont annulés.
+     * @param g Contexte graphique
+     */
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (page == null) {
+            return;
+        }
+        // the page is vertically centered, as an icon in a JLabel
+        int top = Math.max(0, (getHeight() - (int) Math.round(getContentHeight() * gestureScale)) / 2);
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.translate(0, top);
+        if (gestureScale != 1) {
+            // zoom gesture in progress: the last display is stretched until the page is rendered again
+            g2.scale(gestureScale, gestureScale);
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            if (mode == Mode.RENDITION) {
+                g2.drawImage(rendition, 0, 0, null);
+            } else if (source != null) {
+                g2.drawImage(source, transform, null);
+            }
+            g2.dispose();
+            return;
+        }
+        clip.translate(0, -top);
+        Rectangle visible = getVisibleRect();
+        visible.translate(0, -top);
+        if (mode == Mode.RENDITION) {
+            // only the clipped part of the rendition is copied by Java2D
+            g2.drawImage(rendition, 0, 0, null);
+        } else if (mode == Mode.TILES) {
+            paintTiles(g2, clip, visible);
+        } else {
+            paintStrips(g2, clip, visible);
+        }
+        g2.dispose();
+    }
+
+    /**
+     * Méthode permettant de dessiner les tuiles visibles de la page (mode TILES)
+     * @param g Contexte graphique, dans le repère de la page
+     * @param clip Zone à dessiner, dans le repère de la page
+     * @param visible Zone visible, dans le repère de la page
+     */
+    private void paintTiles(Graphics2D g, Rectangle clip, Rectangle visible) {
+        int columns = (getContentWidth() + TILE_SIZE - 1) / TILE_SIZE;
+        int rows = (getContentHeight() + TILE_SIZE - 1) / TILE_SIZE;
+        for (int row = Math.max(0, clip.y / TILE_SIZE); row <= Math.min(rows - 1, (clip.y + clip.height) / TILE_SIZE); row++) {
+            for (int column = Math.max(0, clip.x / TILE_SIZE); column <= Math.min(columns - 1, (clip.x + clip.width) / TILE_SIZE); column++) {
+                Rectangle bounds = tileBounds(column, row);
+                Image tile = tiles.get(tileKey(row * columns + column));
+                if (tile != null) {
+                    g.drawImage(tile, bounds.x, bounds.y, null);
+                    continue;
+                }
+                if (source == null) {
+                    continue;
+                }
+                // placeholder until the tile is rendered
+                Graphics2D placeholder = (Graphics2D) g.create();
+                placeholder.clip(bounds);
+                placeholder.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+                placeholder.drawImage(source, transform, null);
+                placeholder.dispose();
+            }
+        }
+        // keep the tiles around the visible area ready for scrolling
+        Set<String> wanted = new HashSet<String>();
+        for (int row = Math.max(0, visible.y / TILE_SIZE - TILE_MARGIN); row <= Math.min(rows - 1, (visible.y + visible.height) / TILE_SIZE + TILE_MARGIN); row++) {
+            for (int column = Math.max(0, visible.x / TILE_SIZE - TILE_MARGIN); column <= Math.min(columns - 1, (visible.x + visible.width) / TILE_SIZE + TILE_MARGIN); column++) {
+                String key = tileKey(row * columns + column);
+                wanted.add(key);
+                // tiles are rendered once the page is decoded
+                if (source != null && !tiles.contains(key)) {
+                    requestTile(key, tileBounds(column, row));
+                }
+            }
+        }
+        cancelPending(wanted);
+    }
+
+    /**
+     * Méthode permettant de calculer le rectangle d'une tuile, dans le repère de la page
+     * @param column Colonne de la tuile
+     * @param row Rangée de la tuile
+     * @return Rectangle de la tuile, tronqué aux bords de la page
+     */
+    private Rectangle tileBounds(int column, int row) {
+        int x = column * TILE_SIZE;
+        int y = row * TILE_SIZE;
+        return new Rectangle(x, y, Math.min(TILE_SIZE, getContentWidth() - x), Math.min(TILE_SIZE, getContentHeight() - y));
+    }
+
+    /**
+     * Méthode permettant de calculer la clé d'une tuile ou d'une bande pour la page, la taille et la rotation courantes
+     * @param index Index de la tuile ou de la bande
+     * @return Clé de la tuile
+     */
+    private String tileKey(int index) {
+        String pageKey = page.getKey() != null ? page.getKey() : page.getId() + "#" + System.identityHashCode(page);
+        return pageKey + "@" + displayWidth + "x" + displayHeight + "r" + rotation + ":" + index;
+    }
+
+    /**
+     * Méthode permettant de demander le rendu d'une tuile au pool de décodage, s'il n'est pas déjà en cours.
+     * La tuile est dessinée depuis l'image décodée en taille réelle avec une interpolation bicubique ;
+     * toutes les tuiles partagent la même transformation, ce qui évite les raccords visibles entre tuiles.
+     * @param key Clé de la tuile
+     * @param bounds Rectangle de la tuile, dans le repère de la page
+     */
+    private void requestTile(String key, Rectangle bounds) {
+        if (pending.containsKey(key)) {
+            return;
+        }
+        int requestGeneration = generation;
+        Image tileSource = source;
+        AffineTransform tileTransform = transform;
+        live.add(key);
+        pending.put(key, ImageDecoder.getPool().submit(() -> {
+            if (isStale(key, requestGeneration)) {
+                return;
+            }
+            BufferedImage tile = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = tile.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.translate(-bounds.x, -bounds.y);
+            g.drawImage(tileSource, tileTransform, null);
+            g.dispose();
+            tiles.put(key, tile);
+            SwingUtilities.invokeLater(() -> {
+                if (requestGeneration == generation) {
+                    pending.remove(key);
+                    live.remove(key);
+                    repaint();
+                }
+            });
+        }));
+    }
+
+    /**
+     * Méthode permettant de dessiner les bandes visibles d'une page très haute (mode STRIPS)
+     * @param g Contexte graphique, dans le repère de la page
+     * @param clip Zone à dessiner, dans le repère de la page
+     * @param visible Zone visible, dans le repère de la page
+     */
+    private void paintStrips(Graphics2D g, Rectangle clip, Rectangle visible) {
+        double scale = (double) displayWidth / page.getWidth();
+        int count = (page.getHeight() + stripHeight - 1) / stripHeight;
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        for (int i = Math.max(0, (int) (clip.y / scale) / stripHeight); i <= Math.min(count - 1, (int) ((clip.y + clip.height) / scale) / stripHeight); i++) {
+            Image strip = tiles.get(tileKey(i));
+            if (strip != null) {
+                int top = (int) (i * stripHeight * scale);
+                int bottom = (int) (Math.min((i + 1) * stripHeight, page.getHeight()) * scale);
+                g.drawImage(strip, 0, top, displayWidth, bottom - top, null);
+            }
+        }
+        // keep the neighbours ready for scrolling
+        Set<String> wanted = new HashSet<String>();
+        int first = Math.max(0, (int) (visible.y / scale) / stripHeight - TILE_MARGIN);
+        int last = Math.min(count - 1, (int) ((visible.y + visible.height) / scale) / stripHeight + TILE_MARGIN);
+        for (int i = first; i <= last; i++) {
+            String key = tileKey(i);
+            wanted.add(key);
+            if (!tiles.contains(key)) {
+                requestStrip(key, i);
+            }
+        }
+        cancelPending(wanted);
+    }
+
+    /**
+     * Méthode permettant de demander le décodage d'une bande au pool de décodage, s'il n'est pas déjà en cours
+     * @param key Clé de la bande
+     * @param index Numéro de la bande
+     */
+    private void requestStrip(String key, int index) {
+        if (pending.containsKey(key)) {
+            return;
+        }
+        int requestGeneration = generation;
+        int requestFactor = factor;
+        Page requestPage = page;
+        Rectangle region = new Rectangle(0, index * stripHeight, page.getWidth(), Math.min(stripHeight, page.getHeight() - index * stripHeight));
+        live.add(key);
+        pending.put(key, ImageDecoder.getPool().submit(() -> {
+            try {
+                if (isStale(key, requestGeneration)) {
+                    return;
+                }
+                // the compressed page is kept in the page byte cache, reading it again is cheap
+                ByteBuffer data = ZipUtil.readEntry(requestPage);
+                if (isStale(key, requestGeneration)) {
+                    return;
+                }
+                tiles.put(key, ImageDecoder.decodeRegion(data, region, requestFactor));
+                SwingUtilities.invokeLater(() -> {
+                    if (requestGeneration == generation) {
+                        pending.remove(key);
+                        live.remove(key);
+                        repaint();
+                    }
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
+    }
+
+    /**
+     * Méthode permettant d'annuler les rendus en cours qui ne sont plus nécessaires
+     * @param wanted Clés des tuiles à conserver, ou null pour tout annuler
+     */
+    private void cancelPending(Set<String> wanted) {
+        Iterator<Map.Entry<String, Future<?>>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Future<?>> entry = iterator.next();
+            if (wanted == null || !wanted.contains(entry.getKey())) {
+                entry.getValue().cancel(false);
+                live.remove(entry.getKey());
+                iterator.remove();
+            } else if (entry.getValue().isDone()) {
+                live.remove(entry.getKey());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Méthode permettant de savoir, depuis le pool de décodage, si un rendu de tuile ou de bande n'est plus attendu
+     * @param key Clé de la tuile
+     * @param requestGeneration Génération lors de la demande du rendu
+     * @return true si une autre page a été affichée depuis la demande, ou si la tuile est sortie de la zone préparée
+     */
+    private boolean isStale(String key, int requestGeneration) {
+        return requestGeneration != generation || !live.contains(key);
+    }
+}
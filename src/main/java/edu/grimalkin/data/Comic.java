@@ -10,14 +10,19 @@ import java.util.List;
  * La classe encapsule plusieurs méthodes permettant de manipuler les données d'un comic.
  */
 public class Comic {
+    /** Largeur d'affichage des couvertures dans la bibliothèque */
+    public static final int COVER_WIDTH = 100;
     private String id;
     private String title;
     private String path;
     private transient Image cover;
-    private List<Page> pages;
+    /** Pages du comic, qui ne sont pas enregistrées dans la bibliothèque : elles sont relues à l'ouverture du comic */
+    private transient List<Page> pages;
     private int pageCount;
     private int currentPage; 
     private int lastPageRead;
+    /** Indique si les pages du comic ont été lues depuis son archive (les pages enregistrées dans la bibliothèque ne contiennent pas d'image) */
+    private transient boolean loaded;
     // private boolean isRead;
 
     /**
@@ -53,6 +58,22 @@ public class Comic {
         lastPageRead = 0;
     }
 
+    /**
+     * Constructeur par copie
+     * Seuls les attributs enregistrés dans la bibliothèque sont copiés : la copie n'a ni couverture ni pages
+     * @param _comic Comic à copier
+     */
+    public Comic(Comic _comic) {
+        id = _comic.id;
+        title = _comic.title;
+        path = _comic.path;
+        cover = null;
+        pages = new ArrayList<Page>();
+        pageCount = _comic.pageCount;
+        currentPage = _comic.currentPage;
+        lastPageRead = _comic.lastPageRead;
+    }
+
     /**
      * Constructeur avec paramètres
      * Initialise les attributs avec les valeurs passées en paramètres
@@ -65,9 +86,10 @@ public class Comic {
         id = String.valueOf((_title + _path).hashCode());
         title = _title;
         path = _path;
-        cover = _pages.get(0).getImage();
+        cover = _pages.get(0).getImage(COVER_WIDTH);
         pages = _pages;
         pageCount = pages.size();
+        loaded = true;
         currentPage = 0;
         lastPageRead = 0;
     }
@@ -112,6 +134,11 @@ public class Comic {
      * @return la dernière page lue du comic
      */
     public int getLastPageRead() {return lastPageRead;}
+    /**
+     * Accesseur en lecture de l'état de chargement du comic
+     * @return true si les pages du comic ont été lues depuis son archive
+     */
+    public boolean isLoaded() {return loaded;}
 
 
     /**
@@ -136,9 +163,19 @@ public class Comic {
     public void setCover(Image _cover) {cover = _cover;}
     /**
      * Accesseur en écriture pour la liste des pages du comic
+     * Le nombre de pages est mis à jour en conséquence, et le comic est considéré comme chargé
      * @param _pages la liste des pages du comic
      */
-    public void setPages(List<Page> _pages) {pages = _pages;}
+    public void setPages(List<Page> _pages) {
+        pages = _pages;
+        pageCount = pages.size();
+        loaded = true;
+    }
+    /**
+     * Accesseur en écriture pour le nombre de pages du comic, lorsque ses pages ne sont pas chargées
+     * @param _pageCount le nombre de pages du comic
+     */
+    public void setPageCount(int _pageCount) {pageCount = _pageCount;}
     /**
      * Accesseur en écriture pour la page courante du comic
      * @param _currentPage la page courante du comic
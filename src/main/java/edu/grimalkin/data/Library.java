@@ -2,19 +2,38 @@ package edu.grimalkin.data;
 
 import java.util.List;
 import java.io.File;
+import java.nio.file.InvalidPathException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 import edu.grimalkin.util.JSONUtil;
-import edu.grimalkin.util.ZipUtil;
+import edu.grimalkin.util.SearchIndex;
 
 /**
  * Une classe "Library" représentant une bibliothèque de comics
  * Une bibliothèque est composée d'un ensemble de comics (Comic.java)
  * La classe encapsule plusieurs méthodes permettant de manipuler les données d'une bibliothèque.
+ * Les comics sont indexés par titre, par identifiant et par chemin : les recherches ne parcourent pas la liste.
+ * Les index sont tenus à jour par addComic(), removeComic() et initComics(), et reconstruits à la première
+ * recherche qui suit setComics() (notamment après la lecture du fichier JSON).
+ * Les titres et noms de fichier des comics sont également indexés pour la recherche pendant la frappe (search()).
  */
 public class Library {
     private List<Comic> comics;
     // private int currentComic;
+    /** Comics indexés par titre (le premier comic de la liste pour un titre donné) */
+    private transient Map<String, Comic> titles = new HashMap<String, Comic>();
+    /** Comics indexés par identifiant */
+    private transient Map<String, Comic> ids = new HashMap<String, Comic>();
+    /** Comics indexés par chemin absolu normalisé */
+    private transient Map<String, Comic> paths = new HashMap<String, Comic>();
+    /** Index de recherche des comics par titre et nom de fichier */
+    private transient SearchIndex search = new SearchIndex();
+    /** Indique si les index correspondent à la liste des comics */
+    private transient boolean indexed;
+    /** Indique si plusieurs comics de la liste partagent un titre, un identifiant ou un chemin */
+    private transient boolean duplicates;
 
     /**
      * Constructeur par défaut de la classe Library
@@ -22,6 +41,55 @@ public class Library {
      */
     public Library() {
         comics = new ArrayList<Comic>();
+        indexed = true;
+    }
+
+    /**
+     * Méthode permettant de reconstruire les index si la liste des comics a été remplacée
+     */
+    private void index() {
+        if (indexed) {
+            return;
+        }
+        titles.clear();
+        ids.clear();
+        paths.clear();
+        search.clear();
+        duplicates = false;
+        for (Comic comic : comics) {
+            put(comic);
+        }
+        indexed = true;
+    }
+
+    /**
+     * Méthode permettant d'ajouter un comic aux index, le premier comic d'une clé étant conservé
+     * @param comic Comic à indexer
+     */
+    private void put(Comic comic) {
+        duplicates |= titles.putIfAbsent(comic.getTitle(), comic) != null;
+        duplicates |= ids.putIfAbsent(comic.getId(), comic) != null;
+        duplicates |= paths.putIfAbsent(pathKey(comic.getPath()), comic) != null;
+        search.add(comic);
+    }
+
+    /**
+     * Méthode permettant de calculer la clé d'un chemin dans l'index des chemins.
+     * Le chemin est rendu absolu et normalisé sans accéder au disque (les liens symboliques ne sont pas résolus).
+     * @param path Chemin d'accès à un comic
+     * @return Chemin absolu normalisé
+     */
+    private static String pathKey(String path) {
+        if (path == null) {
+            return "";
+        }
+        File file = new File(path).getAbsoluteFile();
+        try {
+            return file.toPath().normalize().toString();
+        } catch (InvalidPathException e) {
+            // a name that cannot be encoded with the platform charset is kept as is
+            return file.getPath();
+        }
     }
 
     /**
@@ -32,6 +100,7 @@ public class Library {
         // if the comic is not already in the library, add it
         if (getComic(comic.getTitle()) == null) {
             comics.add(comic);
+            put(comic);
         }
     }
 
@@ -40,7 +109,20 @@ public class Library {
      * @param title Titre du comic à supprimer de la bibliothèque
      */
     public void removeComic(String title) {
-        comics.remove(getComic(title));
+        Comic comic = getComic(title);
+        if (comic == null) {
+            return;
+        }
+        comics.remove(comic);
+        if (duplicates) {
+            // another comic may take the keys of the removed one
+            indexed = false;
+        } else {
+            titles.remove(comic.getTitle());
+            ids.remove(comic.getId());
+            paths.remove(pathKey(comic.getPath()));
+            search.remove(comic);
+        }
     }
 
     /**
@@ -49,12 +131,40 @@ public class Library {
      * @return Comic correspondant à l'identifiant passé en paramètre
      */
     public Comic getComic(String title) {
-        for (Comic comic : comics) {
-            if (comic.getTitle().equals(title)) {
-                return comic;
-            }
-        }
-        return null;
+        index();
+        return titles.get(title);
+    }
+
+    /**
+     * Méthode permettant de récupérer un comic de la bibliothèque via son identifiant
+     * @param id Identifiant du comic à récupérer
+     * @return Comic correspondant à l'identifiant passé en paramètre, ou null
+     */
+    public Comic getComicById(String id) {
+        index();
+        return ids.get(id);
+    }
+
+    /**
+     * Méthode permettant de récupérer un comic de la bibliothèque via le chemin de son archive
+     * @param path Chemin d'accès au comic, relatif ou absolu
+     * @return Comic dont l'archive a le même chemin absolu normalisé, ou null
+     */
+    public Comic getComicByPath(String path) {
+        index();
+        return paths.get(pathKey(path));
+    }
+
+    /**
+     * Méthode permettant de rechercher des comics par leur titre ou leur nom de fichier
+     * Chaque mot du texte doit commencer, être contenu dans, ou être proche (faute de frappe) d'un mot du titre ou du nom de fichier
+     * @param text Texte recherché
+     * @return Comics trouvés, les meilleures correspondances en premier (tous les comics si le texte est vide)
+     * @see SearchIndex#query(String)
+     */
+    public List<Comic> search(String text) {
+        index();
+        return search.query(text);
     }
 
     /**
@@ -68,6 +178,7 @@ public class Library {
 
     /**
      * Méthode permettant de récupérer la liste des comics de la bibliothèque
+     * La liste ne doit pas être modifiée directement, les index ne seraient pas mis à jour
      * @return Liste des comics de la bibliothèque
      */
     public List<Comic> getComics() {
@@ -80,6 +191,8 @@ public class Library {
      */
     public void setComics(List<Comic> _comics) {
         comics = _comics;
+        // rebuilt on the next lookup, a snapshot of the list is never indexed
+        indexed = false;
     }
 
     /**
@@ -101,50 +214,27 @@ public class Library {
     }
 
     /**
-     * Méthode permettant d'initialiser les comics de la bibliothèque
+     * Méthode permettant d'initialiser les comics de la bibliothèque au démarrage, sans lire leurs archives.
+     * Seuls les comics dont l'archive n'existe plus sont retirés de la bibliothèque :
+     * les pages d'un comic ne sont chargées qu'à son ouverture, et sa couverture lorsqu'elle doit être affichée.
      */
     public void initComics() {
-        // for each comic in library
-        // get path of comics in library
-        for (int i = 0; i < comics.size(); i++) {
-            List<Page> pages = new ArrayList<Page>();
-            String path = comics.get(i).getPath();
-            System.out.println(path);
-            File file = new File(path);
-            
-            // new List of pages
-            // check if file exists
-            if (!file.exists()) {
-                System.out.println("File does not exist");
-                comics.remove(i);
+        // a single file lookup per comic, the archives themselves are not opened
+        boolean removed = comics.removeIf(comic -> {
+            if (!new File(comic.getPath()).exists()) {
+                System.out.println(comic.getPath() + ": File does not exist");
+                return true;
             }
-            else {
-                try {
-                    // unzip comic
-                    ZipUtil.unzip(file, pages);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-                comics.get(i).setPages(pages);
-                // show comic
-                comics.get(i).getPages().get(0).getId();
+            return false;
+        });
+        if (removed) {
+            indexed = false;
+            try {
+                JSONUtil.writeJSONFile(this);
+            } catch (Exception e) {
+                e.printStackTrace();
             }
         }
-        try {
-            JSONUtil.writeJSONFile(this);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        updateCovers();
-    }
-    
-    /**
-     * Méthode permettant de mettre à jour les couvertures des comics de la bibliothèque
-    */
-    private void updateCovers() {
-        for (Comic comic : comics) {
-            comic.setCover(comic.getPages().get(0).getImage());
-        }
     }
 }
 
@@ -3,19 +3,47 @@ package edu.grimalkin.data;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 // import java.awt.Toolkit;
 
+import edu.grimalkin.util.DecodedImageCache;
+import edu.grimalkin.util.PageByteCache;
+import edu.grimalkin.util.ZipUtil;
+
 
 /**
  * Une classe "Page" représentant une page d'un comic book (Bande dessinée, comic US, manga, etc.)
  * Une page est composée d'une image (Image.java)
+ * Une page peut être "paresseuse" : elle ne connaît alors que l'entrée de l'archive qui la contient,
+ * et l'image n'est décodée qu'au premier appel de getImage(), puis conservée dans le cache partagé DecodedImageCache.
+ * Les informations d'en-tête (dimensions, format, type de couleur) d'une page déjà publiée sur l'EDT peuvent être renseignées
+ * par le thread de chargement : elles sont donc volatiles.
  * La classe encapsule plusieurs méthodes permettant de manipuler les données d'une page.
  */
 public class Page {
+    /** Rapport hauteur / largeur à partir duquel une page est considérée comme très haute (affichée par bandes) */
+    public static final int TALL_RATIO = 4;
+
     private String id;
-    private int width;
-    private int height;
-    private transient Image image;
+    /** Largeur de la page, renseignée par le thread de chargement alors que la page peut déjà être affichée */
+    private volatile int width;
+    /** Hauteur de la page, renseignée par le thread de chargement alors que la page peut déjà être affichée */
+    private volatile int height;
+    private transient volatile Image image;
+    /** Chemin de l'archive contenant la page (null si l'image est fournie directement) */
+    private transient String archive;
+    /** Nom de l'entrée de la page dans l'archive */
+    private transient String entryName;
+    /** Taille compressée de l'entrée dans l'archive */
+    private transient long compressedSize;
+    /** Taille décompressée de l'entrée dans l'archive */
+    private transient long size;
+    /** Position de l'en-tête local de l'entrée dans l'archive */
+    private transient long offset;
+    /** Format de l'image (jpeg, png, ...), connu par sondage de l'en-tête avant tout décodage */
+    private transient volatile String format;
+    /** Type de couleur de l'image (gray, rgb, rgba, ...), connu par sondage de l'en-tête avant tout décodage */
+    private transient volatile String colorType;
 
     /**
      * Constructeur par défaut
@@ -43,6 +71,28 @@ public class Page {
         image = _image;
     }
 
+    /**
+     * Constructeur d'une page paresseuse
+     * Seule la référence vers l'entrée de l'archive est conservée, l'image sera décodée au premier accès.
+     * @param _id Identifiant de la page
+     * @param _archive Chemin de l'archive contenant la page
+     * @param _entryName Nom de l'entrée de la page dans l'archive
+     * @param _compressedSize Taille compressée de l'entrée
+     * @param _size Taille décompressée de l'entrée
+     * @param _offset Position de l'en-tête local de l'entrée dans l'archive
+     */
+    public Page(String _id, String _archive, String _entryName, long _compressedSize, long _size, long _offset) {
+        id = _id;
+        width = 0;
+        height = 0;
+        image = null;
+        archive = _archive;
+        entryName = _entryName;
+        compressedSize = _compressedSize;
+        size = _size;
+        offset = _offset;
+    }
+
     /**
      * Accesseur en lecture de l'attribut id
      * @return Identifiant de la page
@@ -60,9 +110,97 @@ public class Page {
     public int getHeight() {return height;}
     /**
      * Accesseur en lecture de l'attribut image
-     * @return Image de la page
+     * Si la page est paresseuse et que l'image n'a pas encore été décodée en taille réelle, l'entrée correspondante de l'archive est lue et décodée.
+     * @return Image de la page en taille réelle, ou null si l'entrée n'a pas pu être lue
+     */
+    public Image getImage() {return getImage(0);}
+
+    /**
+     * Méthode permettant de récupérer l'image de la page à une résolution suffisante pour l'afficher sur une largeur donnée.
+     * L'image d'une page paresseuse n'est pas conservée par la page mais par le cache partagé DecodedImageCache :
+     * en cas d'absence (page jamais affichée ou retirée du cache), l'entrée est décodée à nouveau de manière transparente,
+     * par sous-échantillonnage à la plus petite résolution couvrant la largeur demandée.
+     * Une image en cache n'est décodée à nouveau, à une résolution supérieure, que si une largeur plus grande est demandée.
+     * Aucun verrou n'est tenu pendant la lecture et le décodage : l'EDT n'attend jamais le décodage d'une page par un autre thread.
+     * Si deux threads décodent la même page en même temps, l'image la plus large est conservée dans le cache.
+     * @param targetWidth Largeur d'affichage souhaitée (0 ou moins pour la taille réelle)
+     * @return Image de la page, au moins aussi large que targetWidth (ou en taille réelle), ou null si l'entrée n'a pas pu être lue
+     * @see DecodedImageCache
+     */
+    public Image getImage(int targetWidth) {
+        // images given directly (or rotated) are kept by the page itself
+        Image own = image;
+        if (entryName == null || own != null) {
+            return own;
+        }
+        Image cached = DecodedImageCache.getInstance().get(getKey());
+        boolean fullSize = cached != null && width > 0 && cached.getWidth(null) >= width;
+        boolean largeEnough = cached != null && targetWidth > 0 && cached.getWidth(null) >= targetWidth;
+        if (fullSize || largeEnough) {
+            return cached;
+        }
+        try {
+            // decoded outside of any lock, a concurrent wider decode of the same page wins
+            Image decoded = ZipUtil.readImage(this, targetWidth, 0);
+            return DecodedImageCache.getInstance().putIfWider(getKey(), decoded);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return cached;
+        }
+    }
+
+    /**
+     * Méthode permettant de récupérer la clé de la page dans les caches (chemin de l'archive et nom de l'entrée)
+     * @return Clé de la page, ou null si la page n'est pas paresseuse
+     */
+    public String getKey() {
+        return entryName == null ? null : PageByteCache.key(archive, entryName);
+    }
+    /**
+     * Accesseur en lecture de l'attribut archive
+     * @return Chemin de l'archive contenant la page
+     */
+    public String getArchive() {return archive;}
+    /**
+     * Accesseur en lecture de l'attribut entryName
+     * @return Nom de l'entrée de la page dans l'archive
+     */
+    public String getEntryName() {return entryName;}
+    /**
+     * Accesseur en lecture de l'attribut compressedSize
+     * @return Taille compressée de l'entrée
+     */
+    public long getCompressedSize() {return compressedSize;}
+    /**
+     * Accesseur en lecture de l'attribut size
+     * @return Taille décompressée de l'entrée
+     */
+    public long getSize() {return size;}
+    /**
+     * Accesseur en lecture de l'attribut offset
+     * @return Position de l'en-tête local de l'entrée dans l'archive
+     */
+    public long getOffset() {return offset;}
+    /**
+     * Accesseur en lecture de l'attribut format
+     * @return Format de l'image, ou null s'il n'est pas connu
+     */
+    public String getFormat() {return format;}
+    /**
+     * Accesseur en lecture de l'attribut colorType
+     * @return Type de couleur de l'image, ou null s'il n'est pas connu
      */
-    public Image getImage() {return image;}
+    public String getColorType() {return colorType;}
+    /**
+     * Méthode permettant de savoir si l'image de la page est disponible sans décodage
+     * @return true si l'image est en mémoire (dans la page ou dans le cache des images décodées)
+     */
+    public boolean isLoaded() {return image != null || (entryName != null && DecodedImageCache.getInstance().contains(getKey()));}
+    /**
+     * Méthode permettant de savoir si la page est très haute, et doit donc être affichée par bandes sans être décodée en entier
+     * @return true si la page est paresseuse et si ses dimensions connues la rendent beaucoup plus haute que large
+     */
+    public boolean isTall() {return width > 0 && height > TALL_RATIO * width && entryName != null;}
 
     /**
      * Accesseur en écriture de l'attribut id
@@ -84,6 +222,16 @@ public class Page {
      * @param _image Image de la page
      */
     public void setImage(Image _image) {image = _image;}
+    /**
+     * Accesseur en écriture de l'attribut format
+     * @param _format Format de l'image
+     */
+    public void setFormat(String _format) {format = _format;}
+    /**
+     * Accesseur en écriture de l'attribut colorType
+     * @param _colorType Type de couleur de l'image
+     */
+    public void setColorType(String _colorType) {colorType = _colorType;}
 
     /**
      * Méthode permettant d'effectuer la rotation d'une page d'un comic book.
@@ -98,8 +246,9 @@ public class Page {
         // Sinon, on effectue la rotation
         else {
             // On récupère la largeur et la hauteur de l'image
-            int w = image.getWidth(null);
-            int h = image.getHeight(null);
+            Image source = getImage();
+            int w = source.getWidth(null);
+            int h = source.getHeight(null);
             // On crée une nouvelle image de la taille de l'image d'origine
             BufferedImage newImage = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
             // On crée un nouveau contexte graphique
@@ -107,7 +256,7 @@ public class Page {
             // On effectue la rotation
             g.rotate(Math.toRadians(_angle), w/2, h/2);
             // On dessine l'image d'origine dans le nouveau contexte graphique
-            g.drawImage((BufferedImage) image, null, 0, 0);
+            g.drawImage((BufferedImage) source, null, 0, 0);
             // On met à jour l'image de la page
             image = newImage;
             // On met à jour la largeur et la hauteur de la page
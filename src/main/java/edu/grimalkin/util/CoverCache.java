@@ -0,0 +1,147 @@
+package edu.grimalkin.util;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import javax.imageio.ImageIO;
+
+/**
+ * Classe utilitaire gérant le cache persistant des couvertures de la bibliothèque.
+ * Chaque couverture est enregistrée, déjà mise à l'échelle, dans un petit fichier PNG du dossier du cache ;
+ * le nom du fichier est formé à partir du chemin de l'archive, de la largeur de la couverture,
+ * ainsi que de la taille et de la date de modification de l'archive.
+ * Une archive modifiée n'a donc plus de couverture en cache (elle sera lue à nouveau), et l'ancienne couverture
+ * est supprimée lors de l'enregistrement de la nouvelle. Au démarrage, la bibliothèque est ainsi affichée
+ * sans ouvrir une seule archive.
+ */
+public class CoverCache {
+    /** Dossier du cache des couvertures */
+    private static final String DIRECTORY = "Covers";
+    /** Extension des fichiers du cache */
+    private static final String EXTENSION = ".png";
+
+    /**
+     * Constructeur privé pour empêcher l'instanciation de la classe.
+     * @throws IllegalStateException
+     * @see IllegalStateException
+     */
+    private CoverCache() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Méthode permettant de récupérer la couverture d'une archive, en la lisant dans l'archive si elle n'est pas dans le cache.
+     * Une couverture lue dans l'archive est ajoutée au cache.
+     * @param archive Archive du comic
+     * @param width Largeur de la couverture
+     * @return Couverture mise à l'échelle
+     * @throws IOException Retourne une exception si la couverture n'a pas pu être lue dans l'archive
+     * @see ZipUtil#readCover(File, int)
+     */
+    public static BufferedImage getCover(File archive, int width) throws IOException {
+        BufferedImage cover = get(archive, width);
+        if (cover == null) {
+            cover = ZipUtil.readCover(archive, width);
+            put(archive, width, cover);
+        }
+        return cover;
+    }
+
+    /**
+     * Méthode permettant de lire une couverture dans le cache
+     * @param archive Archive du comic
+     * @param width Largeur de la couverture
+     * @return Couverture, ou null si elle n'est pas dans le cache (ou si l'archive a été modifiée depuis)
+     */
+    public static BufferedImage get(File archive, int width) {
+        Path file = Paths.get(DIRECTORY, fileName(archive, width));
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return ImageDecoder.decode(ByteBuffer.wrap(Files.readAllBytes(file)));
+        } catch (IOException e) {
+            // a damaged file is only a cache miss
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Méthode permettant d'ajouter une couverture au cache, en supprimant les couvertures précédentes de la même archive.
+     * Le fichier est écrit sous un nom temporaire puis renommé, un fichier du cache est donc toujours complet.
+     * Les erreurs d'écriture sont ignorées : la couverture sera simplement lue à nouveau dans l'archive.
+     * @param archive Archive du comic
+     * @param width Largeur de la couverture
+     * @param cover Couverture mise à l'échelle
+     */
+    public static void put(File archive, int width, BufferedImage cover) {
+        try {
+            Path directory = Files.createDirectories(Paths.get(DIRECTORY));
+            String name = fileName(archive, width);
+            Path temporary = Files.createTempFile(directory, "cover", ".tmp");
+            try {
+                if (!ImageIO.write(toPortable(cover), "png", temporary.toFile())) {
+                    throw new IOException("No PNG writer available");
+                }
+                Files.move(temporary, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+            // covers of previous versions of the archive
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, prefix(archive) + "*" + EXTENSION)) {
+                for (Path path : stale) {
+                    if (!path.getFileName().toString().equals(name)) {
+                        Files.deleteIfExists(path);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Méthode permettant de calculer le préfixe commun aux fichiers du cache d'une archive
+     * @param archive Archive du comic
+     * @return Préfixe dérivé du chemin absolu de l'archive
+     */
+    private static String prefix(File archive) {
+        return UUID.nameUUIDFromBytes(archive.getAbsolutePath().getBytes(StandardCharsets.UTF_8)) + "_";
+    }
+
+    /**
+     * Méthode permettant de calculer le nom du fichier du cache d'une couverture
+     * @param archive Archive du comic
+     * @param width Largeur de la couverture
+     * @return Nom du fichier, qui change dès que la taille ou la date de modification de l'archive change
+     */
+    private static String fileName(File archive, int width) {
+        return prefix(archive) + width + "_" + archive.length() + "_" + archive.lastModified() + EXTENSION;
+    }
+
+    /**
+     * Méthode permettant de convertir une image dans un type accepté par l'encodeur PNG (sans alpha prémultiplié)
+     * @param image Image à convertir
+     * @return Image elle-même si elle n'utilise pas d'alpha prémultiplié, sa copie en ARGB sinon
+     */
+    private static BufferedImage toPortable(BufferedImage image) {
+        if (!image.isAlphaPremultiplied()) {
+            return image;
+        }
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = copy.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return copy;
+    }
+}
@@ -0,0 +1,184 @@
+package edu.grimalkin.util;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Une classe "DecodedImageCache" représentant le cache partagé des images décodées des pages.
+ * Chaque image est pondérée par la mémoire occupée par ses pixels (taille de son DataBuffer, tous bancs confondus),
+ * et la somme des poids ne dépasse jamais le budget du cache, calculé à partir de Runtime.maxMemory().
+ * Lorsque le budget est dépassé, les images les moins récemment utilisées sont retirées (LRU) ;
+ * une page retirée est simplement décodée à nouveau lors de son prochain affichage.
+ * Des compteurs de succès, d'échecs et d'évictions permettent d'ajuster le budget.
+ * La classe est utilisable depuis plusieurs threads.
+ */
+public class DecodedImageCache {
+    /** Part de la mémoire maximale de la JVM allouée au cache */
+    private static final int MEMORY_FRACTION = 4;
+    /** Instance partagée du cache */
+    private static final DecodedImageCache INSTANCE = new DecodedImageCache(Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+
+    private final long capacity;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private final LinkedHashMap<String, Image> images;
+
+    /**
+     * Constructeur avec paramètres
+     * @param _capacity Budget du cache en octets
+     */
+    public DecodedImageCache(long _capacity) {
+        capacity = _capacity;
+        size = 0;
+        // access order: iteration starts with the least recently used image
+        images = new LinkedHashMap<String, Image>(16, 0.75f, true);
+    }
+
+    /**
+     * Accesseur en lecture de l'instance partagée du cache
+     * @return Cache partagé des images décodées
+     */
+    public static DecodedImageCache getInstance() {return INSTANCE;}
+
+    /**
+     * Méthode permettant de calculer la mémoire occupée par les pixels d'une image.
+     * Le poids d'une BufferedImage est celui de son DataBuffer (images indexées, bancs multiples, sous-images comprises) ;
+     * les autres images sont comptées à 4 octets par pixel.
+     * @param image Image à pondérer
+     * @return Poids de l'image en octets
+     */
+    public static long weight(Image image) {
+        if (image instanceof BufferedImage) {
+            DataBuffer buffer = ((BufferedImage) image).getRaster().getDataBuffer();
+            long bytes = 0;
+            for (int bank = 0; bank < buffer.getNumBanks(); bank++) {
+                bytes += (long) buffer.getSize() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+            }
+            return bytes;
+        }
+        return (long) Math.max(0, image.getWidth(null)) * Math.max(0, image.getHeight(null)) * 4;
+    }
+
+    /**
+     * Méthode permettant de récupérer une image du cache
+     * @param key Clé de la page
+     * @return Image de la page, ou null si elle n'est pas dans le cache
+     */
+    public synchronized Image get(String key) {
+        Image image = images.get(key);
+        if (image == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return image;
+    }
+
+    /**
+     * Méthode permettant de savoir si une image est dans le cache, sans modifier l'ordre LRU ni les compteurs
+     * @param key Clé de la page
+     * @return true si l'image de la page est dans le cache
+     */
+    public synchronized boolean contains(String key) {
+        return images.containsKey(key);
+    }
+
+    /**
+     * Méthode permettant d'ajouter une image au cache, en remplaçant l'éventuelle image précédente de la même page.
+     * Les images plus lourdes que le budget du cache ne sont pas conservées.
+     * @param key Clé de la page
+     * @param image Image décodée de la page
+     */
+    public synchronized void put(String key, Image image) {
+        long weight = weight(image);
+        if (weight > capacity) {
+            return;
+        }
+        Image previous = images.put(key, image);
+        if (previous != null) {
+            size -= weight(previous);
+        }
+        size += weight;
+        Iterator<Map.Entry<String, Image>> iterator = images.entrySet().iterator();
+        while (size > capacity && iterator.hasNext()) {
+            Map.Entry<String, Image> eldest = iterator.next();
+            size -= weight(eldest.getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Méthode permettant d'ajouter une image au cache, sauf si une image au moins aussi large de la même page y a été ajoutée entre-temps
+     * (par exemple par un autre thread ayant décodé la même page en même temps).
+     * @param key Clé de la page
+     * @param image Image décodée de la page
+     * @return Image conservée pour la page : celle du cache si elle est au moins aussi large, sinon image
+     */
+    public synchronized Image putIfWider(String key, Image image) {
+        Image current = images.get(key);
+        if (current != null && current.getWidth(null) >= image.getWidth(null)) {
+            return current;
+        }
+        put(key, image);
+        return image;
+    }
+
+    /**
+     * Méthode permettant de retirer une image du cache
+     * @param key Clé de la page
+     */
+    public synchronized void remove(String key) {
+        Image previous = images.remove(key);
+        if (previous != null) {
+            size -= weight(previous);
+        }
+    }
+
+    /**
+     * Accesseur en lecture du budget du cache
+     * @return Budget du cache en octets
+     */
+    public long getCapacity() {return capacity;}
+    /**
+     * Accesseur en lecture de la mémoire occupée par le cache
+     * @return Poids total des images conservées, en octets
+     */
+    public synchronized long getSize() {return size;}
+    /**
+     * Accesseur en lecture du nombre d'images conservées
+     * @return Nombre d'images dans le cache
+     */
+    public synchronized int getCount() {return images.size();}
+    /**
+     * Accesseur en lecture du nombre de succès
+     * @return Nombre de recherches ayant trouvé l'image dans le cache
+     */
+    public synchronized long getHits() {return hits;}
+    /**
+     * Accesseur en lecture du nombre d'échecs
+     * @return Nombre de recherches n'ayant pas trouvé l'image dans le cache
+     */
+    public synchronized long getMisses() {return misses;}
+    /**
+     * Accesseur en lecture du nombre d'évictions
+     * @return Nombre d'images retirées pour respecter le budget
+     */
+    public synchronized long getEvictions() {return evictions;}
+
+    /**
+     * Méthode permettant de décrire l'état du cache
+     * @return Description de l'état et des compteurs du cache
+     */
+    @Override
+    public synchronized String toString() {
+        return "DecodedImageCache[" + images.size() + " images, " + (size >> 20) + "/" + (capacity >> 20) + " MB, hits=" + hits
+            + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+}
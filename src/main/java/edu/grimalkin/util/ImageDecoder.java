@@ -0,0 +1,216 @@
+package edu.grimalkin.util;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * Classe utilitaire pour le décodage des images des pages.
+ * Contrairement à Toolkit.createImage(), qui décode de manière asynchrone sur le thread de chargement d'AWT
+ * (et renvoie donc souvent une largeur et une hauteur de -1), les images sont ici entièrement décodées avec ImageIO
+ * et renvoyées sous forme de BufferedImage aux dimensions correctes.
+ * Un pool de threads dimensionné sur le nombre de coeurs permet de décoder plusieurs pages en parallèle.
+ */
+public class ImageDecoder {
+    /** Pool de threads de décodage, dimensionné sur le nombre de coeurs disponibles */
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new java.util.concurrent.ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "grimalkin-decoder-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        // images are decoded from memory, the disk cache of ImageIO is useless
+        ImageIO.setUseCache(false);
+    }
+
+    /**
+     * Constructeur privé pour empêcher l'instanciation de la classe.
+     * @throws IllegalStateException
+     * @see IllegalStateException
+     */
+    private ImageDecoder() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Accesseur en lecture du pool de décodage
+     * @return Pool de threads de décodage
+     */
+    public static ExecutorService getPool() {return POOL;}
+
+    /**
+     * Méthode permettant de décoder un lot de pages en parallèle sur le pool de décodage, sans attendre leur décodage.
+     * Les résultats sont rendus dans l'ordre du lot, quel que soit l'ordre de fin des décodages : le i-ème Future
+     * donne l'image de la i-ème tâche, et les décodages démarrent dans cet ordre (file du pool).
+     * @param <T> Type du résultat des tâches
+     * @param tasks Tâches de décodage, dans l'ordre des pages
+     * @return Décodages en cours, dans l'ordre des tâches
+     */
+    public static <T> List<Future<T>> submitAll(List<? extends Callable<T>> tasks) {
+        List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(POOL.submit(task));
+        }
+        return futures;
+    }
+
+    /**
+     * Méthode permettant de décoder une image depuis un tampon mémoire, sans copie du tampon.
+     * @param data Contenu compressé de l'image (JPEG, PNG, ...)
+     * @return Image entièrement décodée
+     * @throws IOException Retourne une exception si l'image n'a pas pu être décodée
+     */
+    public static BufferedImage decode(ByteBuffer data) throws IOException {
+        return decode(data, 0, 0);
+    }
+
+    /**
+     * Méthode permettant de décoder une image à la résolution nécessaire pour l'afficher à une taille cible.
+     * Le décodeur ne lit qu'un pixel sur n dans chaque direction (ImageReadParam.setSourceSubsampling),
+     * n étant le plus grand facteur entier pour lequel l'image obtenue reste au moins aussi grande que la taille cible.
+     * Une page de 4000x6000 affichée sur 900 pixels de large est ainsi décodée en 1000x1500 au lieu de 24 millions de pixels.
+     * @param data Contenu compressé de l'image (JPEG, PNG, ...)
+     * @param targetWidth Largeur cible (0 ou moins si la largeur n'est pas contrainte)
+     * @param targetHeight Hauteur cible (0 ou moins si la hauteur n'est pas contrainte)
+     * @return Image décodée, au moins aussi grande que la taille cible (ou en taille réelle si l'image est plus petite)
+     * @throws IOException Retourne une exception si l'image n'a pas pu être décodée
+     */
+    public static BufferedImage decode(ByteBuffer data, int targetWidth, int targetHeight) throws IOException {
+        try (ImageInputStream in = new ByteBufferImageInputStream(data)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int factor = subsampling(reader.getWidth(0), reader.getHeight(0), targetWidth, targetHeight);
+                if (factor > 1) {
+                    param.setSourceSubsampling(factor, factor, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Méthode permettant de ne décoder qu'une région (par exemple une bande horizontale) d'une image.
+     * Seuls les pixels de la région sont conservés en mémoire (ImageReadParam.setSourceRegion),
+     * ce qui permet d'afficher des pages très hautes sans jamais les décoder en entier.
+     * @param data Contenu compressé de l'image (JPEG, PNG, ...)
+     * @param region Région à décoder, en pixels de l'image réelle
+     * @param factor Facteur de sous-échantillonnage à appliquer à la région (1 pour la taille réelle)
+     * @return Région décodée
+     * @throws IOException Retourne une exception si la région n'a pas pu être décodée
+     */
+    public static BufferedImage decodeRegion(ByteBuffer data, Rectangle region, int factor) throws IOException {
+        try (ImageInputStream in = new ByteBufferImageInputStream(data)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(region);
+                if (factor > 1) {
+                    param.setSourceSubsampling(factor, factor, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Méthode permettant de calculer le facteur de sous-échantillonnage à appliquer pour décoder une image à une taille cible
+     * @param width Largeur réelle de l'image
+     * @param height Hauteur réelle de l'image
+     * @param targetWidth Largeur cible (0 ou moins si la largeur n'est pas contrainte)
+     * @param targetHeight Hauteur cible (0 ou moins si la hauteur n'est pas contrainte)
+     * @return Facteur de sous-échantillonnage (1 pour un décodage en taille réelle)
+     */
+    public static int subsampling(int width, int height, int targetWidth, int targetHeight) {
+        int factor = Integer.MAX_VALUE;
+        if (targetWidth > 0) {
+            factor = Math.min(factor, width / targetWidth);
+        }
+        if (targetHeight > 0) {
+            factor = Math.min(factor, height / targetHeight);
+        }
+        return factor == Integer.MAX_VALUE ? 1 : Math.max(1, factor);
+    }
+
+    /**
+     * Une classe "ByteBufferImageInputStream" permettant de lire un flux d'image ImageIO directement depuis un ByteBuffer
+     * (par exemple une tranche de projection mémoire d'une archive), sans le recopier dans un tableau.
+     */
+    private static class ByteBufferImageInputStream extends ImageInputStreamImpl {
+        private final ByteBuffer buffer;
+
+        /**
+         * Constructeur avec paramètres
+         * @param _buffer Tampon à lire, de sa position à sa limite
+         */
+        ByteBufferImageInputStream(ByteBuffer _buffer) {
+            buffer = _buffer.slice();
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if (streamPos >= buffer.limit()) {
+                return -1;
+            }
+            return buffer.get((int) streamPos++) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if (len == 0) {
+                return 0;
+            }
+            int remaining = buffer.limit() - (int) Math.min(streamPos, buffer.limit());
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = Math.min(len, remaining);
+            buffer.get((int) streamPos, b, off, count);
+            streamPos += count;
+            return count;
+        }
+
+        @Override
+        public long length() {
+            return buffer.limit();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package edu.grimalkin.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Classe utilitaire permettant de connaître les dimensions, le format et le type de couleur d'une image
+ * en ne lisant que ses premiers octets (marqueurs SOF du JPEG, bloc IHDR du PNG, en-têtes GIF, BMP et WebP),
+ * sans décoder les pixels.
+ */
+public class ImageProbe {
+    /** Nombre d'octets lus par défaut pour sonder une image */
+    public static final int HEAD_SIZE = 4096;
+    /** Nombre maximal d'octets lus pour sonder une image (les JPEG peuvent contenir de longs blocs EXIF avant le marqueur SOF) */
+    public static final int MAX_HEAD_SIZE = 256 * 1024;
+
+    /**
+     * Une classe "Info" représentant les informations d'en-tête d'une image
+     */
+    public static class Info {
+        private final String format;
+        private final int width;
+        private final int height;
+        private final String colorType;
+
+        /**
+         * Constructeur avec paramètres
+         * @param _format Format de l'image (jpeg, png, gif, bmp, webp)
+         * @param _width Largeur de l'image
+         * @param _height Hauteur de l'image
+         * @param _colorType Type de couleur de l'image (gray, rgb, rgba, indexed, cmyk, ...)
+         */
+        public Info(String _format, int _width, int _height, String _colorType) {
+            format = _format;
+            width = _width;
+            height = _height;
+            colorType = _colorType;
+        }
+
+        /**
+         * Accesseur en lecture du format de l'image
+         * @return Format de l'image
+         */
+        public String getFormat() {return format;}
+        /**
+         * Accesseur en lecture de la largeur de l'image
+         * @return Largeur de l'image
+         */
+        public int getWidth() {return width;}
+        /**
+         * Accesseur en lecture de la hauteur de l'image
+         * @return Hauteur de l'image
+         */
+        public int getHeight() {return height;}
+        /**
+         * Accesseur en lecture du type de couleur de l'image
+         * @return Type de couleur de l'image
+         */
+        public String getColorType() {return colorType;}
+    }
+
+    /**
+     * Constructeur privé pour empêcher l'instanciation de la classe.
+     * @throws IllegalStateException
+     * @see IllegalStateException
+     */
+    private ImageProbe() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Méthode permettant de sonder l'en-tête d'une image.
+     * @param head Premiers octets de l'image (de la position à la limite du tampon)
+     * @return Informations de l'image, ou null si le format n'est pas reconnu ou si les octets fournis ne suffisent pas
+     */
+    public static Info probe(ByteBuffer head) {
+        ByteBuffer data = head.slice().order(ByteOrder.BIG_ENDIAN);
+        int length = data.limit();
+        if (length >= 3 && u8(data, 0) == 0xFF && u8(data, 1) == 0xD8) {
+            return probeJpeg(data);
+        }
+        if (length >= 26 && data.getLong(0) == 0x89504E470D0A1A0AL) {
+            return probePng(data);
+        }
+        if (length >= 10 && u8(data, 0) == 'G' && u8(data, 1) == 'I' && u8(data, 2) == 'F') {
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            return new Info("gif", data.getShort(6) & 0xFFFF, data.getShort(8) & 0xFFFF, "indexed");
+        }
+        if (length >= 26 && u8(data, 0) == 'B' && u8(data, 1) == 'M') {
+            return probeBmp(data.order(ByteOrder.LITTLE_ENDIAN));
+        }
+        if (length >= 30 && data.getInt(0) == 0x52494646 && data.getInt(8) == 0x57454250) {
+            return probeWebp(data);
+        }
+        return null;
+    }
+
+    /**
+     * Méthode permettant de sonder un JPEG en parcourant ses marqueurs jusqu'au premier marqueur SOF
+     * @param data Premiers octets de l'image
+     * @return Informations de l'image, ou null si le marqueur SOF n'a pas été atteint
+     */
+    private static Info probeJpeg(ByteBuffer data) {
+        int pos = 2;
+        while (pos + 4 <= data.limit()) {
+            if (u8(data, pos) != 0xFF) {
+                return null;
+            }
+            int marker = u8(data, pos + 1);
+            // fill bytes
+            if (marker == 0xFF) {
+                pos++;
+                continue;
+            }
+            // standalone markers have no length
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                pos += 2;
+                continue;
+            }
+            int segmentLength = data.getShort(pos + 2) & 0xFFFF;
+            boolean sof = marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (sof) {
+                if (pos + 10 > data.limit()) {
+                    return null;
+                }
+                int height = data.getShort(pos + 5) & 0xFFFF;
+                int width = data.getShort(pos + 7) & 0xFFFF;
+                int components = u8(data, pos + 9);
+                String colorType = components == 1 ? "gray" : components == 3 ? "rgb" : components == 4 ? "cmyk" : "unknown";
+                return new Info("jpeg", width, height, colorType);
+            }
+            pos += 2 + segmentLength;
+        }
+        return null;
+    }
+
+    /**
+     * Méthode permettant de sonder un PNG via son bloc IHDR
+     * @param data Premiers octets de l'image
+     * @return Informations de l'image
+     */
+    private static Info probePng(ByteBuffer data) {
+        int width = data.getInt(16);
+        int height = data.getInt(20);
+        String colorType;
+        switch (u8(data, 25)) {
+            case 0: colorType = "gray"; break;
+            case 2: colorType = "rgb"; break;
+            case 3: colorType = "indexed"; break;
+            case 4: colorType = "gray-alpha"; break;
+            case 6: colorType = "rgba"; break;
+            default: colorType = "unknown"; break;
+        }
+        return new Info("png", width, height, colorType);
+    }
+
+    /**
+     * Méthode permettant de sonder un BMP via son en-tête DIB
+     * @param data Premiers octets de l'image, en little endian
+     * @return Informations de l'image
+     */
+    private static Info probeBmp(ByteBuffer data) {
+        int headerSize = data.getInt(14);
+        int width;
+        int height;
+        int bitCount;
+        if (headerSize == 12) {
+            width = data.getShort(18) & 0xFFFF;
+            height = data.getShort(20) & 0xFFFF;
+            bitCount = data.getShort(24) & 0xFFFF;
+        } else {
+            if (data.limit() < 30) {
+                return null;
+            }
+            width = data.getInt(18);
+            // a negative height means a top-down bitmap
+            height = Math.abs(data.getInt(22));
+            bitCount = data.getShort(28) & 0xFFFF;
+        }
+        return new Info("bmp", width, height, bitCount <= 8 ? "indexed" : bitCount == 32 ? "rgba" : "rgb");
+    }
+
+    /**
+     * Méthode permettant de sonder un WebP via son premier bloc (VP8, VP8L ou VP8X)
+     * @param data Premiers octets de l'image
+     * @return Informations de l'image, ou null si le bloc n'est pas reconnu
+     */
+    private static Info probeWebp(ByteBuffer data) {
+        int chunk = data.getInt(12);
+        if (chunk == 0x56503820) {
+            // "VP8 ": lossy, the frame header follows the 3 bytes frame tag and the 3 bytes start code
+            int width = (u8(data, 26) | u8(data, 27) << 8) & 0x3FFF;
+            int height = (u8(data, 28) | u8(data, 29) << 8) & 0x3FFF;
+            return new Info("webp", width, height, "rgb");
+        }
+        if (chunk == 0x5650384C && u8(data, 20) == 0x2F) {
+            // "VP8L": lossless, 14 bits per dimension after the signature byte
+            int b0 = u8(data, 21);
+            int b1 = u8(data, 22);
+            int b2 = u8(data, 23);
+            int b3 = u8(data, 24);
+            int width = 1 + (b0 | (b1 & 0x3F) << 8);
+            int height = 1 + (b1 >> 6 | b2 << 2 | (b3 & 0x0F) << 10);
+            return new Info("webp", width, height, "rgba");
+        }
+        if (chunk == 0x56503858) {
+            // "VP8X": extended, 24 bits canvas size minus one
+            int width = 1 + (u8(data, 24) | u8(data, 25) << 8 | u8(data, 26) << 16);
+            int height = 1 + (u8(data, 27) | u8(data, 28) << 8 | u8(data, 29) << 16);
+            boolean alpha = (u8(data, 20) & 0x10) != 0;
+            return new Info("webp", width, height, alpha ? "rgba" : "rgb");
+        }
+        return null;
+    }
+
+    /**
+     * Méthode permettant de lire un octet non signé
+     * @param data Tampon à lire
+     * @param index Position de l'octet
+     * @return Valeur de l'octet entre 0 et 255
+     */
+    private static int u8(ByteBuffer data, int index) {
+        return data.get(index) & 0xFF;
+    }
+}
@@ -0,0 +1,375 @@
+package edu.grimalkin.util;
+
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Classe utilitaire pour la mise à l'échelle des images des pages.
+ * Elle remplace Image.getScaledInstance(), dont le filtre SCALE_SMOOTH (AreaAveragingScaleFilter) passe par l'ancien
+ * pipeline producteur / consommateur d'AWT : lent, coûteux en allocations et limité à un seul thread.
+ * Les pixels sont ici traités directement, par bandes de lignes réparties sur les coeurs disponibles,
+ * avec plusieurs algorithmes au choix selon le compromis vitesse / qualité recherché.
+ * Les images avec transparence sont traitées en alpha prémultiplié, pour éviter les franges sombres sur les bords.
+ */
+public class ImageScaler {
+    /** Nombre de lignes de l'image cible traitées par une même tâche */
+    private static final int BAND_HEIGHT = 32;
+    /** Précision des poids en virgule fixe des algorithmes bilinéaires */
+    private static final int FIXED_SHIFT = 8;
+    private static final int FIXED_ONE = 1 << FIXED_SHIFT;
+
+    /**
+     * Une énumération "Algorithm" des algorithmes de mise à l'échelle, du plus rapide au plus soigné
+     */
+    public enum Algorithm {
+        /** Plus proche voisin : le plus rapide, crénelé */
+        NEAREST,
+        /** Interpolation bilinéaire en une passe : rapide, crénelée pour les fortes réductions */
+        BILINEAR,
+        /** Réductions successives de moitié puis interpolation bilinéaire : bon compromis pour les fortes réductions */
+        PROGRESSIVE,
+        /** Filtre de Lanczos à 3 lobes : le plus net, le plus coûteux */
+        LANCZOS3
+    }
+
+    /** Algorithme utilisé pendant que l'utilisateur interagit (changement de page, zoom, ...) */
+    public static final Algorithm FAST = Algorithm.BILINEAR;
+    /** Algorithme utilisé lorsque l'affichage est au repos */
+    public static final Algorithm QUALITY = Algorithm.LANCZOS3;
+
+    /**
+     * Constructeur privé pour empêcher l'instanciation de la classe.
+     * @throws IllegalStateException
+     * @see IllegalStateException
+     */
+    private ImageScaler() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * Méthode permettant de mettre une image à l'échelle
+     * @param image Image à mettre à l'échelle
+     * @param width Largeur cible
+     * @param height Hauteur cible
+     * @param algorithm Algorithme de mise à l'échelle
+     * @return Image mise à l'échelle, de type TYPE_INT_RGB (image opaque) ou TYPE_INT_ARGB_PRE
+     */
+    public static BufferedImage scale(BufferedImage image, int width, int height, Algorithm algorithm) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid target size: " + width + "x" + height);
+        }
+        boolean opaque = image.getTransparency() == Transparency.OPAQUE;
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE;
+        int sourceWidth = image.getWidth();
+        int sourceHeight = image.getHeight();
+        int[] pixels = pixels(image, type);
+        int[] scaled;
+        switch (algorithm) {
+            case NEAREST:
+                scaled = nearest(pixels, sourceWidth, sourceHeight, width, height);
+                break;
+            case BILINEAR:
+                scaled = bilinear(pixels, sourceWidth, sourceHeight, width, height);
+                break;
+            case PROGRESSIVE:
+                // halve while the image is at least twice as large as the target, then finish with a bilinear pass
+                while (sourceWidth >= 2 * width && sourceHeight >= 2 * height) {
+                    pixels = halve(pixels, sourceWidth, sourceHeight);
+                    sourceWidth /= 2;
+                    sourceHeight /= 2;
+                }
+                scaled = bilinear(pixels, sourceWidth, sourceHeight, width, height);
+                break;
+            default:
+                scaled = lanczos3(pixels, sourceWidth, sourceHeight, width, height, !opaque);
+                break;
+        }
+        BufferedImage result = new BufferedImage(width, height, type);
+        // setDataElements keeps the image managed, so that it can still be cached by Java2D for drawing
+        result.getRaster().setDataElements(0, 0, width, height, scaled);
+        return result;
+    }
+
+    /**
+     * Méthode permettant de récupérer les pixels d'une image, convertie au besoin dans le type de travail
+     * @param image Image source
+     * @param type Type de travail (TYPE_INT_RGB ou TYPE_INT_ARGB_PRE)
+     * @return Pixels de l'image, ligne par ligne
+     */
+    private static int[] pixels(BufferedImage image, int type) {
+        BufferedImage source = image;
+        if (image.getType() != type) {
+            source = new BufferedImage(image.getWidth(), image.getHeight(), type);
+            Graphics2D g = source.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+        }
+        return (int[]) source.getRaster().getDataElements(0, 0, image.getWidth(), image.getHeight(), null);
+    }
+
+    /**
+     * Méthode permettant d'exécuter un traitement par bandes de lignes de l'image cible, en parallèle
+     * @param height Hauteur de l'image cible
+     * @param band Traitement d'une bande, recevant la première ligne et la ligne de fin (exclue)
+     */
+    private static void forEachBand(int height, BandTask band) {
+        int count = (height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        IntStream.range(0, count).parallel().forEach(i -> band.run(i * BAND_HEIGHT, Math.min(height, (i + 1) * BAND_HEIGHT)));
+    }
+
+    /**
+     * Une interface "BandTask" représentant le traitement d'une bande de lignes
+     */
+    private interface BandTask {
+        /**
+         * Méthode permettant de traiter une bande de lignes
+         * @param from Première ligne de la bande
+         * @param to Ligne de fin de la bande (exclue)
+         */
+        void run(int from, int to);
+    }
+
+    /**
+     * Méthode permettant de mettre des pixels à l'échelle par la méthode du plus proche voisin
+     * @param src Pixels source
+     * @param sw Largeur source
+     * @param sh Hauteur source
+     * @param dw Largeur cible
+     * @param dh Hauteur cible
+     * @return Pixels mis à l'échelle
+     */
+    private static int[] nearest(int[] src, int sw, int sh, int dw, int dh) {
+        int[] dst = new int[dw * dh];
+        int[] xs = new int[dw];
+        for (int x = 0; x < dw; x++) {
+            xs[x] = Math.min(sw - 1, (int) ((x + 0.5) * sw / dw));
+        }
+        forEachBand(dh, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int row = Math.min(sh - 1, (int) ((y + 0.5) * sh / dh)) * sw;
+                int out = y * dw;
+                for (int x = 0; x < dw; x++) {
+                    dst[out + x] = src[row + xs[x]];
+                }
+            }
+        });
+        return dst;
+    }
+
+    /**
+     * Méthode permettant de mettre des pixels à l'échelle par interpolation bilinéaire, en virgule fixe
+     * @param src Pixels source
+     * @param sw Largeur source
+     * @param sh Hauteur source
+     * @param dw Largeur cible
+     * @param dh Hauteur cible
+     * @return Pixels mis à l'échelle
+     */
+    private static int[] bilinear(int[] src, int sw, int sh, int dw, int dh) {
+        int[] dst = new int[dw * dh];
+        int[] x0 = new int[dw];
+        int[] x1 = new int[dw];
+        int[] wx = new int[dw];
+        for (int x = 0; x < dw; x++) {
+            double fx = Math.max(0, (x + 0.5) * sw / dw - 0.5);
+            x0[x] = Math.min(sw - 1, (int) fx);
+            x1[x] = Math.min(sw - 1, x0[x] + 1);
+            wx[x] = (int) ((fx - x0[x]) * FIXED_ONE);
+        }
+        forEachBand(dh, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                double fy = Math.max(0, (y + 0.5) * sh / dh - 0.5);
+                int y0 = Math.min(sh - 1, (int) fy);
+                int wy = (int) ((fy - y0) * FIXED_ONE);
+                int row0 = y0 * sw;
+                int row1 = Math.min(sh - 1, y0 + 1) * sw;
+                int out = y * dw;
+                for (int x = 0; x < dw; x++) {
+                    int p00 = src[row0 + x0[x]];
+                    int p01 = src[row0 + x1[x]];
+                    int p10 = src[row1 + x0[x]];
+                    int p11 = src[row1 + x1[x]];
+                    int pixel = 0;
+                    for (int shift = 0; shift < 32; shift += 8) {
+                        int top = ((p00 >>> shift) & 0xFF) * (FIXED_ONE - wx[x]) + ((p01 >>> shift) & 0xFF) * wx[x];
+                        int bottom = ((p10 >>> shift) & 0xFF) * (FIXED_ONE - wx[x]) + ((p11 >>> shift) & 0xFF) * wx[x];
+                        int value = (top * (FIXED_ONE - wy) + bottom * wy + (1 << (2 * FIXED_SHIFT - 1))) >>> (2 * FIXED_SHIFT);
+                        pixel |= value << shift;
+                    }
+                    dst[out + x] = pixel;
+                }
+            }
+        });
+        return dst;
+    }
+
+    /**
+     * Méthode permettant de réduire des pixels de moitié, chaque pixel cible étant la moyenne de 2x2 pixels source
+     * @param src Pixels source
+     * @param sw Largeur source
+     * @param sh Hauteur source
+     * @return Pixels réduits, de taille (sw / 2) x (sh / 2)
+     */
+    private static int[] halve(int[] src, int sw, int sh) {
+        int dw = sw / 2;
+        int dh = sh / 2;
+        int[] dst = new int[dw * dh];
+        forEachBand(dh, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int row0 = 2 * y * sw;
+                int row1 = row0 + sw;
+                int out = y * dw;
+                for (int x = 0; x < dw; x++) {
+                    int p00 = src[row0 + 2 * x];
+                    int p01 = src[row0 + 2 * x + 1];
+                    int p10 = src[row1 + 2 * x];
+                    int p11 = src[row1 + 2 * x + 1];
+                    int pixel = 0;
+                    for (int shift = 0; shift < 32; shift += 8) {
+                        int sum = ((p00 >>> shift) & 0xFF) + ((p01 >>> shift) & 0xFF) + ((p10 >>> shift) & 0xFF) + ((p11 >>> shift) & 0xFF);
+                        pixel |= ((sum + 2) >>> 2) << shift;
+                    }
+                    dst[out + x] = pixel;
+                }
+            }
+        });
+        return dst;
+    }
+
+    /**
+     * Méthode permettant de mettre des pixels à l'échelle avec un filtre de Lanczos à 3 lobes, en deux passes séparées
+     * (horizontale puis verticale). Pour une réduction, le support du filtre est élargi du facteur de réduction,
+     * afin que chaque pixel cible tienne compte de tous les pixels source qu'il recouvre.
+     * Les deux passes sont faites bande par bande : chaque bande de lignes cible ne met à l'échelle horizontalement
+     * que les lignes source qui y contribuent, la mémoire intermédiaire restant ainsi bornée à quelques lignes par tâche
+     * (les lignes partagées par deux bandes voisines sont calculées deux fois).
+     * @param src Pixels source
+     * @param sw Largeur source
+     * @param sh Hauteur source
+     * @param dw Largeur cible
+     * @param dh Hauteur cible
+     * @param premultiplied true si les pixels sont en alpha prémultiplié (les couleurs sont alors bornées par l'alpha)
+     * @return Pixels mis à l'échelle
+     */
+    private static int[] lanczos3(int[] src, int sw, int sh, int dw, int dh, boolean premultiplied) {
+        Contributions horizontal = new Contributions(sw, dw);
+        Contributions vertical = new Contributions(sh, dh);
+        int[] dst = new int[dw * dh];
+        forEachBand(dh, (from, to) -> {
+            // source rows contributing to the band, the first contributing rows growing with the target row
+            int top = vertical.first[from];
+            int bottom = vertical.first[to - 1] + vertical.weights[to - 1].length;
+            // horizontal pass: the contributing source rows only, scaled to the target width, kept in floats channel by channel
+            float[] strip = new float[(bottom - top) * dw * 4];
+            for (int y = top; y < bottom; y++) {
+                int row = y * sw;
+                int out = (y - top) * dw * 4;
+                for (int x = 0; x < dw; x++) {
+                    float[] weights = horizontal.weights[x];
+                    int index = row + horizontal.first[x];
+                    float c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+                    for (float weight : weights) {
+                        int p = src[index++];
+                        c0 += (p & 0xFF) * weight;
+                        c1 += ((p >>> 8) & 0xFF) * weight;
+                        c2 += ((p >>> 16) & 0xFF) * weight;
+                        c3 += (p >>> 24) * weight;
+                    }
+                    strip[out++] = c0;
+                    strip[out++] = c1;
+                    strip[out++] = c2;
+                    strip[out++] = c3;
+                }
+            }
+            // vertical pass: every target row of the band, accumulated row by row from the strip
+            float[] sum = new float[dw * 4];
+            for (int y = from; y < to; y++) {
+                Arrays.fill(sum, 0);
+                float[] weights = vertical.weights[y];
+                int row = (vertical.first[y] - top) * dw * 4;
+                for (float weight : weights) {
+                    for (int i = 0; i < sum.length; i++) {
+                        sum[i] += strip[row + i] * weight;
+                    }
+                    row += dw * 4;
+                }
+                int out = y * dw;
+                for (int x = 0, i = 0; x < dw; x++, i += 4) {
+                    int alpha = clamp(sum[i + 3]);
+                    int max = premultiplied ? alpha : 255;
+                    dst[out + x] = Math.min(max, clamp(sum[i])) | Math.min(max, clamp(sum[i + 1])) << 8
+                        | Math.min(max, clamp(sum[i + 2])) << 16 | alpha << 24;
+                }
+            }
+        });
+        return dst;
+    }
+
+    /**
+     * Méthode permettant d'arrondir et de borner la valeur d'un canal (le filtre de Lanczos peut dépasser [0, 255])
+     * @param value Valeur du canal
+     * @return Valeur arrondie et bornée
+     */
+    private static int clamp(float value) {
+        int rounded = (int) (value + 0.5f);
+        return rounded < 0 ? 0 : Math.min(255, rounded);
+    }
+
+    /**
+     * Méthode permettant de calculer la valeur du noyau de Lanczos à 3 lobes
+     * @param x Distance au centre, en pixels
+     * @return Valeur du noyau
+     */
+    private static double lanczos3(double x) {
+        if (x == 0) {
+            return 1;
+        }
+        if (x <= -3 || x >= 3) {
+            return 0;
+        }
+        double px = Math.PI * x;
+        return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+    }
+
+    /**
+     * Une classe "Contributions" représentant, pour chaque pixel cible d'une dimension, les pixels source qui y contribuent
+     * (à partir de first) et leurs poids normalisés.
+     */
+    private static class Contributions {
+        private final int[] first;
+        private final float[][] weights;
+
+        /**
+         * Constructeur avec paramètres
+         * @param sourceSize Taille source de la dimension
+         * @param targetSize Taille cible de la dimension
+         */
+        Contributions(int sourceSize, int targetSize) {
+            first = new int[targetSize];
+            weights = new float[targetSize][];
+            double ratio = (double) sourceSize / targetSize;
+            double stretch = Math.max(1, ratio);
+            double support = 3 * stretch;
+            for (int i = 0; i < targetSize; i++) {
+                double center = (i + 0.5) * ratio;
+                int left = Math.max(0, (int) Math.floor(center - support));
+                int right = Math.min(sourceSize - 1, (int) Math.ceil(center + support));
+                float[] w = new float[right - left + 1];
+                double total = 0;
+                for (int j = left; j <= right; j++) {
+                    double value = lanczos3((j + 0.5 - center) / stretch);
+                    w[j - left] = (float) value;
+                    total += value;
+                }
+                for (int j = 0; j < w.length; j++) {
+                    w[j] /= total;
+                }
+                first[i] = left;
+                weights[i] = w;
+            }
+        }
+    }
+}
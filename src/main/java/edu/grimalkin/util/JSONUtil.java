@@ -1,22 +1,54 @@
 package edu.grimalkin.util;
 
 import java.io.File;
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import edu.grimalkin.data.Comic;
 import edu.grimalkin.data.Library;
 
 /**
  * Classe utilitaire pour la manipulation de fichiers JSON
  * La classe encapsule plusieurs méthodes permettant de manipuler les données d'un fichier JSON.
- * La classe utilise la librairie google Gson.
+ * La classe utilise la librairie google Gson, en lecture et écriture en flux (JsonReader, JsonWriter)
+ * avec des TypeAdapter écrits à la main pour Library et Comic.
+ * Le fichier de la bibliothèque ne contient que les informations des comics, pas celles de leurs pages
+ * (relues à l'ouverture de chaque comic) : sa taille dépend du nombre de comics et non du nombre total de pages.
+ * Format du fichier (version 2) :
+ * {"version": 2, "comics": [{"id": "...", "title": "...", "path": "...", "pageCount": 0, "currentPage": 0, "lastPageRead": 0}]}
+ * Le fichier de la version 1 (sans champ "version", et avec les pages de chaque comic) est lu sans ses pages,
+ * puis réécrit dans la version courante au prochain enregistrement.
  * @see <a href="https://code.google.com/archive/p/json-simple/">JSON.simple</a>
  */
 public class JSONUtil {
-    private static final String FILENAME = "Library.json";
+    /** Fichier de la bibliothèque */
     private static final String LIBRARY_JSON = "Library.json";
+    /** Fichier temporaire, renommé en fichier de la bibliothèque une fois écrit */
+    private static final String TEMPORARY = LIBRARY_JSON + ".tmp";
+    /** Version du format du fichier de la bibliothèque */
+    public static final int VERSION = 2;
+    /** Instance de Gson partagée, sans état et utilisable depuis plusieurs threads */
+    private static final Gson GSON = new GsonBuilder()
+        .registerTypeAdapter(Library.class, new LibraryAdapter())
+        .registerTypeAdapter(Comic.class, new ComicAdapter())
+        .create();
 
     /**
      * Constructeur privé pour empêcher l'instanciation de la classe.
@@ -27,18 +59,47 @@ public class JSONUtil {
         throw new IllegalStateException("Utility class");
     }
 
+    /**
+     * Accesseur en lecture de l'instance de Gson partagée
+     * @return Instance de Gson connaissant les TypeAdapter de Library et Comic
+     */
+    public static Gson getGson() {return GSON;}
+
     /**
      * Méthode permettant d'écrire un fichier JSON depuis un objet Library.
+     * Le fichier est écrit sous un nom temporaire, forcé sur le disque, puis renommé : en cas d'arrêt pendant l'écriture,
+     * le fichier précédent reste intact. Le dossier est ensuite forcé sur le disque lorsque le système le permet,
+     * le renommage étant alors lui aussi durable au retour de la méthode.
      * @param library Bibliothèque à écrire
      * @throws IOException retourne une exception si le fichier n'a pas pu être écrit
      */
     public static void writeJSONFile(Library library) throws IOException {
         // Write JSON file
-        Gson gson = new Gson();
-        String json = gson.toJson(library);
-        FileWriter writer = new FileWriter(FILENAME);
-        writer.write(json);
-        writer.close();
+        Path temporary = Paths.get(TEMPORARY);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+            GSON.toJson(library, Library.class, writer);
+            writer.flush();
+            // the content is on the disk before the file replaces the previous one
+            channel.force(true);
+        } catch (JsonIOException e) {
+            throw new IOException(e);
+        }
+        Files.move(temporary, Paths.get(LIBRARY_JSON), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(temporary.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Méthode permettant de forcer sur le disque les entrées d'un dossier (création, renommage de fichiers).
+     * Les systèmes qui ne permettent pas d'ouvrir un dossier (Windows) sont ignorés.
+     * @param directory Dossier à synchroniser
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // directories can not be synchronized on this platform
+        }
     }
 
     /**
@@ -53,11 +114,145 @@ public class JSONUtil {
             writeJSONFile(new Library());
             return new Library();
         }
-        File file = new File(LIBRARY_JSON);
-        String content = new String(Files.readAllBytes(file.toPath()));
-        System.out.println(content);
-        Gson gson = new Gson();
-        Library library = gson.fromJson(content, Library.class);
-        return library;
+        try (Reader reader = Files.newBufferedReader(Paths.get(LIBRARY_JSON), StandardCharsets.UTF_8)) {
+            Library library = GSON.fromJson(reader, Library.class);
+            return library != null ? library : new Library();
+        } catch (JsonParseException e) {
+            throw new IOException(LIBRARY_JSON + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Méthode permettant de lire une chaîne qui peut être null
+     * @param in Flux JSON
+     * @return Chaîne lue, ou null
+     * @throws IOException retourne une exception si le flux n'a pas pu être lu
+     */
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    /**
+     * TypeAdapter de la bibliothèque : version du format, puis liste des comics
+     */
+    private static final class LibraryAdapter extends TypeAdapter<Library> {
+        /** TypeAdapter des comics de la bibliothèque */
+        private final ComicAdapter comicAdapter = new ComicAdapter();
+
+        @Override
+        public void write(JsonWriter out, Library library) throws IOException {
+            if (library == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("version").value(VERSION);
+            out.name("comics").beginArray();
+            for (Comic comic : library.getComics()) {
+                comicAdapter.write(out, comic);
+            }
+            out.endArray();
+            out.endObject();
+        }
+
+        @Override
+        public Library read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            // files written before the version field are version 1
+            int version = 1;
+            List<Comic> comics = new ArrayList<Comic>();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "version":
+                        version = in.nextInt();
+                        break;
+                    case "comics":
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            Comic comic = comicAdapter.read(in);
+                            if (comic != null) {
+                                comics.add(comic);
+                            }
+                        }
+                        in.endArray();
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            if (version > VERSION) {
+                System.out.println(LIBRARY_JSON + ": version " + version + " is newer than " + VERSION + ", unknown fields are ignored");
+            }
+            Library library = new Library();
+            library.setComics(comics);
+            return library;
+        }
+    }
+
+    /**
+     * TypeAdapter d'un comic : ses informations et sa progression, sans ses pages ni sa couverture
+     */
+    private static final class ComicAdapter extends TypeAdapter<Comic> {
+        @Override
+        public void write(JsonWriter out, Comic comic) throws IOException {
+            if (comic == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("id").value(comic.getId());
+            out.name("title").value(comic.getTitle());
+            out.name("path").value(comic.getPath());
+            out.name("pageCount").value(comic.getPageCount());
+            out.name("currentPage").value(comic.getCurrentPage());
+            out.name("lastPageRead").value(comic.getLastPageRead());
+            out.endObject();
+        }
+
+        @Override
+        public Comic read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Comic comic = new Comic();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        comic.setId(nextString(in));
+                        break;
+                    case "title":
+                        comic.setTitle(nextString(in));
+                        break;
+                    case "path":
+                        comic.setPath(nextString(in));
+                        break;
+                    case "pageCount":
+                        comic.setPageCount(in.nextInt());
+                        break;
+                    case "currentPage":
+                        comic.setCurrentPage(in.nextInt());
+                        break;
+                    case "lastPageRead":
+                        comic.setLastPageRead(in.nextInt());
+                        break;
+                    default:
+                        // "pages" in version 1
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return comic;
+        }
     }
-}
\ No newline at end of file
+}
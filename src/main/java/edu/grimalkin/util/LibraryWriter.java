@@ -0,0 +1,221 @@
+package edu.grimalkin.util;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import edu.grimalkin.data.Comic;
+import edu.grimalkin.data.Library;
+
+/**
+ * Une classe "LibraryWriter" permettant d'enregistrer la bibliothèque en arrière-plan (write-behind).
+ * Une demande d'enregistrement ne fait que marquer la bibliothèque comme modifiée : toutes les demandes reçues pendant
+ * un court délai sont regroupées en une seule écriture du fichier JSON, effectuée sur un thread dédié.
+ * Tourner les pages en continu ne provoque donc qu'une écriture par délai, quel que soit le nombre de pages tournées.
+ * Les modifications en attente sont écrites à la fermeture (close()) et à l'arrêt de la JVM.
+ * La progression de lecture (progress()) n'entraîne pas d'écriture du fichier JSON : elle est ajoutée au journal,
+ * qui est compacté par l'écriture d'un instantané de la bibliothèque lorsqu'il dépasse une taille donnée.
+ * Le nombre d'écritures de la dernière minute est disponible comme indicateur.
+ * @see ProgressJournal
+ */
+public class LibraryWriter {
+    /** Délai de regroupement des demandes d'enregistrement, en millisecondes */
+    private static final long DELAY = 500;
+    /** Période de calcul du nombre d'écritures par minute, en millisecondes */
+    private static final long MINUTE = 60_000;
+    /** Période de synchronisation du journal en durabilité BATCH, en millisecondes */
+    private static final long BATCH_DELAY = 1000;
+    /** Taille du journal au-delà de laquelle il est compacté, en octets */
+    private static final long COMPACTION_SIZE = 4096L * ProgressJournal.RECORD_SIZE;
+
+    /** Thread d'écriture */
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "grimalkin-library-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** Verrou des écritures : les copies sont écrites dans l'ordre où elles ont été prises */
+    private final Object writeLock = new Object();
+    /** Journal de la progression de lecture */
+    private final ProgressJournal journal;
+    /** Copie de la bibliothèque en attente d'écriture, ou null si aucune modification n'est en attente */
+    private Library pending;
+    /** Numéro du fichier du journal à partir duquel les enregistrements ne sont pas dans la copie en attente */
+    private long pendingGeneration;
+    /** Indique si la compaction du journal a été demandée et n'a pas encore été écrite */
+    private boolean compacting;
+    /** Dates des écritures de la dernière minute, en millisecondes */
+    private final ArrayDeque<Long> recentWrites = new ArrayDeque<Long>();
+    /** Nombre de demandes d'enregistrement */
+    private long requests;
+    /** Nombre d'écritures du fichier */
+    private long writes;
+    /** Nombre d'enregistrements ajoutés au journal */
+    private long records;
+
+    /**
+     * Constructeur avec paramètres
+     * Les modifications en attente seront écrites à l'arrêt de la JVM
+     * @param _journal Journal de la progression de lecture, déjà rejoué sur la bibliothèque
+     */
+    public LibraryWriter(ProgressJournal _journal) {
+        journal = _journal;
+        if (journal.getDurability() == ProgressJournal.Durability.BATCH) {
+            executor.scheduleWithFixedDelay(this::forceJournal, BATCH_DELAY, BATCH_DELAY, TimeUnit.MILLISECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            flush();
+            forceJournal();
+        }, "grimalkin-library-flush"));
+    }
+
+    /**
+     * Méthode permettant d'enregistrer la progression de lecture d'un comic, sans écrire le fichier JSON.
+     * Si l'enregistrement échoue, ou si le journal dépasse sa taille de compaction, la bibliothèque est enregistrée ;
+     * la compaction n'est demandée qu'une fois, jusqu'à l'écriture suivante.
+     * @param library Bibliothèque du comic
+     * @param comic Comic dont la page courante ou la dernière page lue a changé
+     * @see #save(Library)
+     */
+    public void progress(Library library, Comic comic) {
+        try {
+            journal.append(comic);
+            synchronized (this) {
+                records++;
+                // past the threshold, the pages turned until the next write do not save again
+                if (journal.size() < COMPACTION_SIZE || compacting) {
+                    return;
+                }
+                compacting = true;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        save(library);
+    }
+
+    /**
+     * Méthode permettant de demander l'enregistrement de la bibliothèque.
+     * Les attributs enregistrés des comics sont copiés immédiatement : la méthode doit être appelée depuis le thread qui modifie
+     * la bibliothèque (l'EDT), et l'écriture a lieu au plus tard après le délai de regroupement.
+     * Le journal passe au fichier suivant au même moment, ses fichiers précédents étant tous pris en compte par la copie.
+     * @param library Bibliothèque à enregistrer
+     */
+    public synchronized void save(Library library) {
+        requests++;
+        // value copies: the writer thread never reads the comics modified on the EDT
+        List<Comic> comics = new ArrayList<Comic>(library.getComics().size());
+        for (Comic comic : library.getComics()) {
+            comics.add(new Comic(comic));
+        }
+        Library snapshot = new Library();
+        snapshot.setComics(comics);
+        boolean clean = pending == null;
+        pending = snapshot;
+        pendingGeneration = journal.rotate();
+        // a flush is already scheduled while the library is dirty; after close(), the shutdown hook writes it
+        if (clean && !executor.isShutdown()) {
+            executor.schedule(this::flush, DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Méthode permettant d'écrire immédiatement les modifications en attente, s'il y en a.
+     * Les erreurs d'écriture sont affichées, le fichier précédent restant alors intact.
+     * @see JSONUtil#writeJSONFile(Library)
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            Library library;
+            long generation;
+            synchronized (this) {
+                library = pending;
+                generation = pendingGeneration;
+                pending = null;
+                compacting = false;
+            }
+            if (library == null) {
+                return;
+            }
+            try {
+                // the records of the files before the copy stay on the disk until the copy is written
+                journal.force();
+                JSONUtil.writeJSONFile(library);
+                // the snapshot is on the disk once written, the records it replaces can go
+                journal.deleteBefore(generation);
+                synchronized (this) {
+                    writes++;
+                    recentWrites.addLast(System.currentTimeMillis());
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Méthode permettant de forcer le journal sur le disque, les erreurs étant affichées
+     */
+    private void forceJournal() {
+        try {
+            journal.force();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Méthode permettant d'écrire les modifications en attente puis d'arrêter le thread d'écriture et de fermer le journal
+     */
+    public void close() {
+        flush();
+        executor.shutdown();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Accesseur en lecture du nombre de demandes d'enregistrement
+     * @return Nombre de demandes d'enregistrement reçues
+     */
+    public synchronized long getRequests() {return requests;}
+    /**
+     * Accesseur en lecture du nombre d'écritures
+     * @return Nombre d'écritures du fichier JSON
+     */
+    public synchronized long getWrites() {return writes;}
+    /**
+     * Accesseur en lecture du nombre d'enregistrements du journal
+     * @return Nombre d'enregistrements ajoutés au journal
+     */
+    public synchronized long getRecords() {return records;}
+
+    /**
+     * Méthode permettant de calculer le nombre d'écritures de la dernière minute
+     * @return Nombre d'écritures du fichier JSON au cours de la dernière minute
+     */
+    public synchronized int getWritesPerMinute() {
+        long now = System.currentTimeMillis();
+        while (!recentWrites.isEmpty() && now - recentWrites.peekFirst() > MINUTE) {
+            recentWrites.removeFirst();
+        }
+        return recentWrites.size();
+    }
+
+    /**
+     * Méthode permettant de décrire l'état de l'enregistrement
+     * @return Description des compteurs de l'enregistrement
+     */
+    @Override
+    public synchronized String toString() {
+        return "LibraryWriter[requests=" + requests + ", records=" + records + ", writes=" + writes + ", " + getWritesPerMinute() + " writes/min"
+            + (pending != null ? ", pending" : "") + "]";
+    }
+}
@@ -0,0 +1,70 @@
+package edu.grimalkin.util;
+
+import java.util.Comparator;
+
+/**
+ * Une classe "NaturalOrderComparator" permettant de trier des noms de fichiers dans l'ordre "naturel".
+ * Les suites de chiffres sont comparées selon leur valeur numérique : "page2.jpg" est donc placé avant "page10.jpg".
+ * Le reste des noms est comparé sans tenir compte de la casse.
+ */
+public class NaturalOrderComparator implements Comparator<String> {
+    /** Instance partagée du comparateur (le comparateur n'a pas d'état) */
+    public static final NaturalOrderComparator INSTANCE = new NaturalOrderComparator();
+
+    /**
+     * Méthode permettant de comparer deux noms dans l'ordre naturel
+     * @param a Premier nom
+     * @param b Second nom
+     * @return Un entier négatif, nul ou positif si a est avant, égal ou après b
+     */
+    @Override
+    public int compare(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+            if (Character.isDigit(ca) && Character.isDigit(cb)) {
+                // skip leading zeros, then compare the runs of digits by length and value
+                int startA = i;
+                int startB = j;
+                while (startA < a.length() - 1 && a.charAt(startA) == '0' && Character.isDigit(a.charAt(startA + 1))) {
+                    startA++;
+                }
+                while (startB < b.length() - 1 && b.charAt(startB) == '0' && Character.isDigit(b.charAt(startB + 1))) {
+                    startB++;
+                }
+                int endA = startA;
+                int endB = startB;
+                while (endA < a.length() && Character.isDigit(a.charAt(endA))) {
+                    endA++;
+                }
+                while (endB < b.length() && Character.isDigit(b.charAt(endB))) {
+                    endB++;
+                }
+                int lengthA = endA - startA;
+                int lengthB = endB - startB;
+                if (lengthA != lengthB) {
+                    return lengthA - lengthB;
+                }
+                for (int k = 0; k < lengthA; k++) {
+                    int diff = a.charAt(startA + k) - b.charAt(startB + k);
+                    if (diff != 0) {
+                        return diff;
+                    }
+                }
+                i = endA;
+                j = endB;
+            } else {
+                int diff = Character.toLowerCase(ca) - Character.toLowerCase(cb);
+                if (diff != 0) {
+                    return diff;
+                }
+                i++;
+                j++;
+            }
+        }
+        int diff = (a.length() - i) - (b.length() - j);
+        return diff != 0 ? diff : a.compareTo(b);
+    }
+}
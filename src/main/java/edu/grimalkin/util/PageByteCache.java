@@ -0,0 +1,220 @@
+package edu.grimalkin.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Une classe "PageByteCache" représentant un cache borné des données compressées (JPEG, PNG, ...) des pages.
+ * Les données sont conservées hors du tas Java, dans des "arènes" de ByteBuffer directs remplies séquentiellement :
+ * le tas ne contient ainsi que les quelques images décodées en cours d'affichage, et décoder à nouveau une page
+ * retirée du cache des images décodées ne nécessite aucune lecture sur le disque.
+ * Lorsque le budget est dépassé, l'arène la plus ancienne est abandonnée avec toutes ses entrées ;
+ * une entrée lue alors que son arène est la prochaine à être abandonnée est recopiée dans l'arène courante,
+ * de sorte que les entrées récemment utilisées survivent aux évictions.
+ * Les tampons renvoyés restent valides même après l'éviction de leur arène (la mémoire n'est jamais réutilisée).
+ * La classe est utilisable depuis plusieurs threads.
+ */
+public class PageByteCache {
+    /** Taille d'une arène, en octets */
+    private static final int ARENA_SIZE = 8 * 1024 * 1024;
+
+    private final long capacity;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+    /** Arènes, de la plus ancienne à la plus récente */
+    private final ArrayDeque<Arena> arenas;
+    private final Map<String, Slot> slots;
+
+    /**
+     * Une classe "Arena" représentant un ByteBuffer direct rempli séquentiellement
+     */
+    private static class Arena {
+        private final ByteBuffer buffer;
+        private final List<String> keys = new ArrayList<String>();
+
+        /**
+         * Constructeur avec paramètres
+         * @param _size Taille de l'arène
+         */
+        Arena(int _size) {
+            buffer = ByteBuffer.allocateDirect(_size);
+        }
+    }
+
+    /**
+     * Une classe "Slot" représentant l'emplacement d'une entrée dans une arène
+     */
+    private static class Slot {
+        private final Arena arena;
+        private final int offset;
+        private final int length;
+
+        /**
+         * Constructeur avec paramètres
+         * @param _arena Arène contenant l'entrée
+         * @param _offset Position de l'entrée dans l'arène
+         * @param _length Taille de l'entrée
+         */
+        Slot(Arena _arena, int _offset, int _length) {
+            arena = _arena;
+            offset = _offset;
+            length = _length;
+        }
+    }
+
+    /**
+     * Constructeur avec paramètres
+     * @param _capacity Budget du cache en octets (mémoire hors tas)
+     */
+    public PageByteCache(long _capacity) {
+        capacity = _capacity;
+        size = 0;
+        arenas = new ArrayDeque<Arena>();
+        slots = new HashMap<String, Slot>();
+    }
+
+    /**
+     * Méthode permettant de calculer la clé d'une page dans le cache
+     * @param archive Chemin de l'archive contenant la page
+     * @param entryName Nom de l'entrée de la page dans l'archive
+     * @return Clé de la page
+     */
+    public static String key(String archive, String entryName) {
+        return archive + "!" + entryName;
+    }
+
+    /**
+     * Méthode permettant de récupérer les données d'une page
+     * @param key Clé de la page
+     * @return Données de la page en lecture seule, ou null si la page n'est pas dans le cache
+     */
+    public synchronized ByteBuffer get(String key) {
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        ByteBuffer data = slice(slot);
+        // second chance: entries read from the next arena to be dropped move to the current one
+        if (slot.arena == arenas.peekFirst() && arenas.size() > 1) {
+            put(key, data);
+        }
+        return data;
+    }
+
+    /**
+     * Méthode permettant de savoir si une page est dans le cache, sans modifier les compteurs
+     * @param key Clé de la page
+     * @return true si les données de la page sont dans le cache
+     */
+    public synchronized boolean contains(String key) {
+        return slots.containsKey(key);
+    }
+
+    /**
+     * Méthode permettant d'ajouter les données d'une page au cache.
+     * Les données plus grandes que le budget du cache ne sont pas conservées.
+     * @param key Clé de la page
+     * @param data Données de la page
+     */
+    public void put(String key, byte[] data) {
+        put(key, ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Méthode permettant d'ajouter les données d'une page au cache, en les recopiant hors du tas.
+     * Les données plus grandes que le budget du cache ne sont pas conservées.
+     * @param key Clé de la page
+     * @param data Données de la page (de la position à la limite du tampon, qui n'est pas modifié)
+     */
+    public synchronized void put(String key, ByteBuffer data) {
+        int length = data.remaining();
+        if (length > capacity) {
+            return;
+        }
+        Arena arena = arenas.peekLast();
+        if (arena == null || arena.buffer.remaining() < length) {
+            // entries larger than an arena get an arena of their own
+            arena = new Arena(Math.max(ARENA_SIZE, length));
+            size += arena.buffer.capacity();
+            arenas.addLast(arena);
+            while (size > capacity && arenas.size() > 1) {
+                evict(arenas.removeFirst());
+            }
+        }
+        int offset = arena.buffer.position();
+        arena.buffer.put(data.duplicate());
+        arena.keys.add(key);
+        slots.put(key, new Slot(arena, offset, length));
+    }
+
+    /**
+     * Méthode permettant d'abandonner une arène et toutes les entrées qu'elle contient encore
+     * @param arena Arène à abandonner
+     */
+    private void evict(Arena arena) {
+        size -= arena.buffer.capacity();
+        for (String key : arena.keys) {
+            Slot slot = slots.get(key);
+            // the entry may have been copied to a newer arena since
+            if (slot != null && slot.arena == arena) {
+                slots.remove(key);
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Méthode permettant de créer une vue en lecture seule sur l'emplacement d'une entrée
+     * @param slot Emplacement de l'entrée
+     * @return Vue sur les données de l'entrée
+     */
+    private static ByteBuffer slice(Slot slot) {
+        ByteBuffer view = slot.arena.buffer.duplicate();
+        view.limit(slot.offset + slot.length).position(slot.offset);
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Accesseur en lecture de la mémoire hors tas occupée par le cache
+     * @return Taille totale des arènes, en octets
+     */
+    public synchronized long getSize() {return size;}
+    /**
+     * Accesseur en lecture du budget du cache
+     * @return Budget du cache en octets
+     */
+    public long getCapacity() {return capacity;}
+    /**
+     * Accesseur en lecture du nombre de succès
+     * @return Nombre de recherches ayant trouvé la page dans le cache
+     */
+    public synchronized long getHits() {return hits;}
+    /**
+     * Accesseur en lecture du nombre d'échecs
+     * @return Nombre de recherches n'ayant pas trouvé la page dans le cache
+     */
+    public synchronized long getMisses() {return misses;}
+    /**
+     * Accesseur en lecture du nombre d'évictions
+     * @return Nombre d'entrées retirées pour respecter le budget
+     */
+    public synchronized long getEvictions() {return evictions;}
+
+    /**
+     * Méthode permettant de décrire l'état du cache
+     * @return Description de l'état et des compteurs du cache
+     */
+    @Override
+    public synchronized String toString() {
+        return "PageByteCache[" + slots.size() + " entries, " + arenas.size() + " arenas, " + (size >> 20) + "/" + (capacity >> 20)
+            + " MB off-heap, hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+}
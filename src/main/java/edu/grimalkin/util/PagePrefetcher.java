@@ -0,0 +1,234 @@
+package edu.grimalkin.util;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import edu.grimalkin.data.Page;
+
+/**
+ * Une classe "PagePrefetcher" permettant de préparer en arrière-plan les pages qui vont probablement être affichées.
+ * Le préchargeur observe la navigation (sens et rythme des changements de page) : les N pages suivantes dans le sens
+ * de lecture, et une fenêtre plus petite derrière, sont décodées et mises à l'échelle de la largeur d'affichage (en qualité)
+ * sur le pool de décodage, dans le cache des rendus. Tourner la page ne coûte alors qu'une recherche dans ce cache.
+ * Plus les pages sont tournées rapidement, plus la fenêtre de préchargement est grande ;
+ * un saut (aller à une page donnée, changement de comic) recentre la fenêtre,
+ * et les préparations en cours des pages sorties de la fenêtre sont annulées.
+ * Les pages que PageView n'affiche pas depuis un rendu de la page entière (très hautes, ou plus étroites que la largeur
+ * d'affichage) ne sont pas préparées ; l'en-tête d'une page dont les dimensions ne sont pas connues est sondé avant tout décodage.
+ * Les méthodes navigate() et getScaled() sont appelées depuis l'EDT.
+ */
+public class PagePrefetcher {
+    /** Nombre de pages préparées devant la page courante, dans le sens de lecture */
+    private static final int AHEAD = 3;
+    /** Nombre de pages préparées derrière la page courante */
+    private static final int BEHIND = 1;
+    /** Nombre maximal de pages ajoutées devant la page courante lorsque les pages sont tournées rapidement */
+    private static final int MAX_BURST = 5;
+    /** Délai en dessous duquel deux changements de page successifs sont considérés comme rapides, en millisecondes */
+    private static final long FAST_TURN = 400;
+
+    /** Pages du comic courant */
+    private List<Page> pages;
+    /** Index de la dernière page affichée */
+    private int current = -1;
+    /** Sens de lecture : 1 vers l'avant, -1 vers l'arrière */
+    private int direction = 1;
+    /** Nombre de changements de page rapides consécutifs */
+    private int burst;
+    /** Date du dernier changement de page, en millisecondes */
+    private long lastTurn;
+    /** Largeur d'affichage des pages préparées */
+    private int width;
+    /** Préparations en cours, indexées par clé du rendu (accès depuis l'EDT uniquement) */
+    private final Map<String, Future<BufferedImage>> pending = new HashMap<String, Future<BufferedImage>>();
+    /**
+     * Clés des préparations en cours toujours attendues, consultées par le pool de décodage entre deux étapes :
+     * les préparations sont annulées sans interruption, qui fermerait les FileChannel des archives en cours de lecture
+     */
+    private final Set<String> live = ConcurrentHashMap.newKeySet();
+    /** Nombre de préparations demandées */
+    private long requests;
+
+    /**
+     * Méthode permettant de calculer la clé du rendu d'une page à une largeur d'affichage
+     * @param page Page
+     * @param width Largeur d'affichage
+     * @return Clé du rendu, ou null si la page n'est pas paresseuse
+     */
+    private static String key(Page page, int width) {
+        return RenditionCache.key(page, width, 0, 0, ImageScaler.QUALITY);
+    }
+
+    /**
+     * Méthode permettant de savoir si une page est affichée par PageView depuis un rendu de la page entière :
+     * les pages très hautes sont affichées par bandes, et les pages plus étroites que la largeur d'affichage par tuiles
+     * @param page Page dont les dimensions sont connues
+     * @param width Largeur d'affichage
+     * @return true si la page est affichée depuis un rendu à cette largeur
+     */
+    private static boolean isRendered(Page page, int width) {
+        return !page.isTall() && width <= page.getWidth();
+    }
+
+    /**
+     * Méthode permettant de récupérer une page mise à l'échelle d'une largeur d'affichage.
+     * La page est prise dans le cache des rendus ou dans sa préparation si elle est terminée ; sinon elle est rendue
+     * immédiatement avec l'algorithme demandé, sans attendre une préparation en cours qui finira dans le cache des rendus.
+     * @param page Page à afficher
+     * @param width Largeur d'affichage
+     * @param algorithm Algorithme de mise à l'échelle à utiliser si la page n'a pas été préparée
+     * @return Page mise à l'échelle
+     */
+    public BufferedImage getScaled(Page page, int width, ImageScaler.Algorithm algorithm) {
+        String key = key(page, width);
+        Future<BufferedImage> future = key == null ? null : pending.get(key);
+        // the EDT never waits for a preparation still running
+        if (future != null && future.isDone()) {
+            pending.remove(key);
+            live.remove(key);
+            try {
+                // pages found not to be rendered once probed are not prepared
+                BufferedImage scaled = future.isCancelled() ? null : future.get();
+                if (scaled != null) {
+                    return scaled;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+            }
+        }
+        return RenditionCache.getInstance().get(page, width, 0, 0, algorithm);
+    }
+
+    /**
+     * Méthode permettant de signaler l'affichage d'une page et de préparer les pages voisines.
+     * Le sens de lecture est déduit de la page précédemment affichée ; un saut de plus d'une page,
+     * un changement de comic ou de largeur d'affichage recentre la fenêtre de préchargement.
+     * @param _pages Pages du comic affiché
+     * @param index Index de la page affichée
+     * @param _width Largeur d'affichage
+     */
+    public void navigate(List<Page> _pages, int index, int _width) {
+        long now = System.currentTimeMillis();
+        boolean jump = _pages != pages || _width != width || Math.abs(index - current) > 1;
+        if (jump) {
+            burst = 0;
+            if (_pages == pages && index != current) {
+                direction = index > current ? 1 : -1;
+            } else if (_pages != pages) {
+                direction = 1;
+            }
+        } else if (index != current) {
+            int turn = index > current ? 1 : -1;
+            burst = turn == direction && now - lastTurn < FAST_TURN ? Math.min(MAX_BURST, burst + 1) : 0;
+            direction = turn;
+        }
+        pages = _pages;
+        current = index;
+        width = _width;
+        lastTurn = now;
+        // pages wanted, nearest first
+        Set<String> wanted = new HashSet<String>();
+        String currentKey = key(pages.get(index), width);
+        if (currentKey != null) {
+            wanted.add(currentKey);
+        }
+        // the missing pages are submitted as one batch, in reading order
+        List<String> keys = new ArrayList<String>();
+        List<Callable<BufferedImage>> tasks = new ArrayList<Callable<BufferedImage>>();
+        for (int i = 1; i <= AHEAD + burst; i++) {
+            request(index + direction * i, wanted, keys, tasks);
+        }
+        for (int i = 1; i <= BEHIND; i++) {
+            request(index - direction * i, wanted, keys, tasks);
+        }
+        List<Future<BufferedImage>> futures = ImageDecoder.submitAll(tasks);
+        for (int i = 0; i < keys.size(); i++) {
+            pending.put(keys.get(i), futures.get(i));
+        }
+        // cancel and release pages that left the window
+        Iterator<Map.Entry<String, Future<BufferedImage>>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Future<BufferedImage>> entry = iterator.next();
+            if (!wanted.contains(entry.getKey())) {
+                entry.getValue().cancel(false);
+                live.remove(entry.getKey());
+                iterator.remove();
+            } else if (entry.getValue().isDone()) {
+                live.remove(entry.getKey());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Méthode permettant d'ajouter la préparation d'une page au lot à soumettre, si elle n'est pas déjà prête ou en cours
+     * @param index Index de la page
+     * @param wanted Clés des pages de la fenêtre de préchargement, complétées par la page demandée
+     * @param keys Clés des pages du lot, complétées par la page demandée
+     * @param tasks Préparations du lot, dans l'ordre des clés
+     */
+    private void request(int index, Set<String> wanted, List<String> keys, List<Callable<BufferedImage>> tasks) {
+        if (index < 0 || index >= pages.size()) {
+            return;
+        }
+        Page page = pages.get(index);
+        int requestWidth = width;
+        String key = key(page, requestWidth);
+        // pages displayed strip by strip or tile by tile are never scaled as a whole
+        if (key == null || page.getWidth() > 0 && !isRendered(page, requestWidth)) {
+            return;
+        }
+        wanted.add(key);
+        if (pending.containsKey(key) || RenditionCache.getInstance().contains(key)) {
+            return;
+        }
+        requests++;
+        live.add(key);
+        keys.add(key);
+        tasks.add(() -> {
+            // the dimensions of a page not probed yet are read from its header, before anything is decoded
+            if (!live.contains(key) || !ZipUtil.probe(page) || !isRendered(page, requestWidth)) {
+                return null;
+            }
+            // the page is decoded, then scaled from the decoded image cache, unless it left the window in between
+            if (!live.contains(key) || page.getImage(requestWidth) == null || !live.contains(key)) {
+                return null;
+            }
+            return RenditionCache.getInstance().get(page, requestWidth, 0, 0, ImageScaler.QUALITY);
+        });
+    }
+
+    /**
+     * Méthode permettant d'annuler toutes les préparations en cours
+     */
+    public void clear() {
+        for (Future<BufferedImage> future : pending.values()) {
+            future.cancel(false);
+        }
+        pending.clear();
+        live.clear();
+        pages = null;
+        current = -1;
+    }
+
+    /**
+     * Méthode permettant de décrire l'état du préchargeur
+     * @return Description de l'état et des compteurs du préchargeur
+     */
+    @Override
+    public String toString() {
+        return "PagePrefetcher[" + pending.size() + " pending, " + requests + " requests]";
+    }
+}
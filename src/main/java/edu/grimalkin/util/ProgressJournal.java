@@ -0,0 +1,314 @@
+package edu.grimalkin.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import edu.grimalkin.data.Comic;
+import edu.grimalkin.data.Library;
+
+/**
+ * Une classe "ProgressJournal" permettant d'enregistrer la progression de lecture des comics dans un journal.
+ * Tourner une page n'écrit qu'un enregistrement de taille fixe (24 octets) à la fin du journal, au lieu de réécrire
+ * tout le fichier JSON de la bibliothèque :
+ * - clé du comic : hash de son chemin sur 8 octets, et hash de contrôle du chemin sur 4 octets ;
+ * - page courante, dernière page lue (entiers sur 4 octets) ;
+ * - CRC32 des 20 octets précédents, un enregistrement incomplet (arrêt pendant l'écriture) étant ignoré.
+ * Au rejeu, un enregistrement n'est appliqué qu'au comic dont le chemin donne les deux hash ; si plusieurs comics
+ * de la bibliothèque partagent une clé, leurs enregistrements sont ignorés plutôt qu'appliqués au mauvais comic.
+ * Les enregistrements contiennent des valeurs et non des différences : les rejouer plusieurs fois donne le même résultat.
+ * Le journal est découpé en fichiers numérotés (Library.n.progress). Lorsqu'un instantané de la bibliothèque est pris,
+ * le journal passe au fichier suivant (rotate()) ; une fois l'instantané écrit, les fichiers précédents sont supprimés
+ * (compaction). Au démarrage, les fichiers restants sont rejoués dans l'ordre sur le dernier instantané (replay()).
+ * Les fichiers de l'ancien format (Library.n.journal, enregistrements de 16 octets indexés par le hash de l'id du comic)
+ * sont encore rejoués, les clés partagées par plusieurs comics étant ignorées, puis supprimés à la compaction suivante.
+ */
+public class ProgressJournal {
+    /**
+     * Durabilité des enregistrements, c'est-à-dire moment où ils sont forcés sur le disque
+     */
+    public enum Durability {
+        /** Chaque enregistrement est forcé sur le disque (fsync) avant de rendre la main */
+        RECORD,
+        /** Les enregistrements sont forcés sur le disque par lots, périodiquement (force()) */
+        BATCH,
+        /** Les enregistrements ne sont forcés sur le disque qu'à la fermeture du journal */
+        SHUTDOWN
+    }
+
+    /** Taille d'un enregistrement, en octets */
+    public static final int RECORD_SIZE = 24;
+    /** Taille d'un enregistrement de l'ancien format, en octets */
+    private static final int LEGACY_RECORD_SIZE = 16;
+    /** Préfixe des fichiers du journal */
+    private static final String PREFIX = "Library.";
+    /** Extension des fichiers du journal */
+    private static final String EXTENSION = ".progress";
+    /** Extension des fichiers du journal de l'ancien format */
+    private static final String LEGACY_EXTENSION = ".journal";
+    /** Nom des fichiers du journal, les groupes étant le numéro et l'extension du fichier */
+    private static final Pattern FILE_NAME = Pattern.compile(Pattern.quote(PREFIX) + "(\\d+)("
+        + Pattern.quote(EXTENSION) + "|" + Pattern.quote(LEGACY_EXTENSION) + ")");
+    /** Base du hash FNV-1a sur 64 bits */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    /** Multiplicateur du hash FNV-1a sur 64 bits */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** Dossier du journal */
+    private final Path directory;
+    /** Durabilité des enregistrements */
+    private final Durability durability;
+    /** Tampon d'écriture d'un enregistrement */
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+    /** Calcul du CRC des enregistrements */
+    private final CRC32 crc = new CRC32();
+    /** Numéro du fichier courant du journal */
+    private long generation;
+    /** Fichier courant du journal, ouvert au premier enregistrement */
+    private FileChannel channel;
+    /** Taille du fichier courant, en octets */
+    private long size;
+    /** Indique si des enregistrements n'ont pas encore été forcés sur le disque */
+    private boolean unforced;
+    /** Fichiers précédents du journal, quittés par rotate() et qui seront forcés sur le disque puis fermés par force() */
+    private final List<FileChannel> retired = new ArrayList<FileChannel>();
+
+    /**
+     * Constructeur avec paramètres
+     * Le journal est placé dans le dossier courant, à côté du fichier JSON de la bibliothèque
+     * @param _durability Durabilité des enregistrements
+     */
+    public ProgressJournal(Durability _durability) {
+        this(Paths.get(""), _durability);
+    }
+
+    /**
+     * Constructeur avec paramètres
+     * Les nouveaux enregistrements sont écrits dans un nouveau fichier, après ceux des fichiers existants
+     * @param _directory Dossier du journal
+     * @param _durability Durabilité des enregistrements
+     */
+    public ProgressJournal(Path _directory, Durability _durability) {
+        directory = _directory;
+        durability = _durability;
+        // a torn record may end the last file, it is never appended to
+        TreeMap<Long, Path> files = files();
+        generation = files.isEmpty() ? 0 : files.lastKey() + 1;
+    }
+
+    /**
+     * Accesseur en lecture de la durabilité des enregistrements
+     * @return Durabilité des enregistrements
+     */
+    public Durability getDurability() {return durability;}
+
+    /**
+     * Accesseur en lecture de la taille du fichier courant du journal
+     * @return Taille du fichier courant, en octets
+     */
+    public synchronized long size() {return size;}
+
+    /**
+     * Méthode permettant d'enregistrer la progression de lecture d'un comic à la fin du journal
+     * @param comic Comic dont la progression a changé
+     * @throws IOException Retourne une exception si l'enregistrement n'a pas pu être écrit
+     */
+    public synchronized void append(Comic comic) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            size = channel.size();
+        }
+        record.clear();
+        record.putLong(key(comic)).putInt(check(comic)).putInt(comic.getCurrentPage()).putInt(comic.getLastPageRead());
+        crc.reset();
+        crc.update(record.array(), 0, RECORD_SIZE - 4);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        size += RECORD_SIZE;
+        unforced = true;
+        if (durability == Durability.RECORD) {
+            force();
+        }
+    }
+
+    /**
+     * Méthode permettant de forcer sur le disque les enregistrements qui ne le sont pas encore,
+     * y compris ceux des fichiers quittés par rotate(), qui sont ensuite fermés
+     * @throws IOException Retourne une exception si le fichier n'a pas pu être synchronisé
+     */
+    public synchronized void force() throws IOException {
+        if (channel != null && unforced) {
+            channel.force(false);
+            unforced = false;
+        }
+        while (!retired.isEmpty()) {
+            FileChannel previous = retired.get(0);
+            previous.force(false);
+            previous.close();
+            retired.remove(0);
+        }
+    }
+
+    /**
+     * Méthode permettant de passer au fichier suivant du journal, au moment où un instantané de la bibliothèque est pris.
+     * Les enregistrements écrits avant l'appel sont tous pris en compte par l'instantané, ceux écrits ensuite iront
+     * dans le nouveau fichier.
+     * Aucune entrée-sortie n'a lieu : le fichier quitté est forcé sur le disque et fermé par le prochain appel de force(),
+     * la méthode peut donc être appelée depuis l'EDT.
+     * @return Numéro du nouveau fichier : les fichiers précédents pourront être supprimés une fois l'instantané écrit
+     * @see #deleteBefore(long)
+     */
+    public synchronized long rotate() {
+        if (channel != null) {
+            retired.add(channel);
+            channel = null;
+            size = 0;
+            unforced = false;
+            generation++;
+        }
+        return generation;
+    }
+
+    /**
+     * Méthode permettant de supprimer les fichiers du journal pris en compte par un instantané de la bibliothèque
+     * @param _generation Numéro retourné par rotate() avant l'écriture de l'instantané
+     * @throws IOException Retourne une exception si un fichier n'a pas pu être supprimé
+     * @see #rotate()
+     */
+    public synchronized void deleteBefore(long _generation) throws IOException {
+        for (Map.Entry<Long, Path> file : files().headMap(_generation).entrySet()) {
+            Files.deleteIfExists(file.getValue());
+        }
+    }
+
+    /**
+     * Méthode permettant de rejouer le journal sur la bibliothèque lue depuis le fichier JSON.
+     * Les fichiers sont lus dans l'ordre, chacun jusqu'à son premier enregistrement incomplet ou invalide ;
+     * les enregistrements des comics qui ne sont plus dans la bibliothèque, ou dont la clé désigne plusieurs comics, sont ignorés.
+     * @param library Bibliothèque lue depuis le dernier instantané
+     * @return Nombre d'enregistrements rejoués
+     * @throws IOException Retourne une exception si un fichier n'a pas pu être lu
+     */
+    public synchronized int replay(Library library) throws IOException {
+        // a key shared by several comics maps to null, its records are dropped
+        Map<Long, Comic> comics = new HashMap<Long, Comic>();
+        Map<Integer, Comic> legacyComics = new HashMap<Integer, Comic>();
+        for (Comic comic : library.getComics()) {
+            long key = key(comic);
+            comics.put(key, comics.containsKey(key) ? null : comic);
+            int legacyKey = comic.getId().hashCode();
+            legacyComics.put(legacyKey, legacyComics.containsKey(legacyKey) ? null : comic);
+        }
+        int replayed = 0;
+        for (Path file : files().headMap(generation).values()) {
+            boolean legacy = file.getFileName().toString().endsWith(LEGACY_EXTENSION);
+            int size = legacy ? LEGACY_RECORD_SIZE : RECORD_SIZE;
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+            while (data.remaining() >= size) {
+                crc.reset();
+                crc.update(data.array(), data.position(), size - 4);
+                Comic comic;
+                int check = 0;
+                if (legacy) {
+                    comic = legacyComics.get(data.getInt());
+                } else {
+                    comic = comics.get(data.getLong());
+                    check = data.getInt();
+                }
+                int currentPage = data.getInt();
+                int lastPageRead = data.getInt();
+                if (data.getInt() != (int) crc.getValue()) {
+                    System.out.println(file + ": invalid record at " + (data.position() - size));
+                    break;
+                }
+                if (comic != null && (legacy || check == check(comic))) {
+                    comic.setCurrentPage(currentPage);
+                    comic.setLastPageRead(lastPageRead);
+                    replayed++;
+                }
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Méthode permettant de fermer le journal, en forçant ses enregistrements sur le disque
+     * @throws IOException Retourne une exception si le fichier n'a pas pu être synchronisé ou fermé
+     */
+    public synchronized void close() throws IOException {
+        force();
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Méthode permettant de calculer la clé d'un comic dans les enregistrements
+     * @param comic Comic
+     * @return Hash FNV-1a sur 64 bits du chemin du comic (de son id s'il n'a pas de chemin)
+     */
+    private static long key(Comic comic) {
+        String path = comic.getPath() != null ? comic.getPath() : comic.getId();
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Méthode permettant de calculer le hash de contrôle d'un comic, indépendant de sa clé
+     * @param comic Comic
+     * @return Hash du chemin du comic (de son id s'il n'a pas de chemin)
+     */
+    private static int check(Comic comic) {
+        return (comic.getPath() != null ? comic.getPath() : comic.getId()).hashCode();
+    }
+
+    /**
+     * Méthode permettant de calculer le chemin d'un fichier du journal
+     * @param _generation Numéro du fichier
+     * @return Chemin du fichier
+     */
+    private Path path(long _generation) {
+        return directory.resolve(PREFIX + _generation + EXTENSION);
+    }
+
+    /**
+     * Méthode permettant de lister les fichiers du journal
+     * @return Fichiers du journal, triés par numéro
+     */
+    private TreeMap<Long, Path> files() {
+        TreeMap<Long, Path> files = new TreeMap<Long, Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toAbsolutePath(), PREFIX + "*{" + EXTENSION + "," + LEGACY_EXTENSION + "}")) {
+            for (Path file : stream) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(Long.parseLong(matcher.group(1)), file);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return files;
+    }
+}
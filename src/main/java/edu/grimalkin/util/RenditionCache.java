@@ -0,0 +1,273 @@
+package edu.grimalkin.util;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.ImageIcon;
+
+import edu.grimalkin.data.Page;
+
+/**
+ * Une classe "RenditionCache" représentant le cache partagé des rendus des pages : une page mise à l'échelle d'une taille
+ * d'affichage, éventuellement tournée, prête à être dessinée telle quelle.
+ * Un rendu est identifié par la page (archive et entrée), la taille cible, la rotation et la qualité de mise à l'échelle :
+ * revenir sur une page déjà affichée, ou alterner entre l'ajustement à la largeur et à la hauteur,
+ * ne coûte ainsi qu'une recherche dans le cache après le premier affichage.
+ * Comme pour DecodedImageCache, les rendus sont pondérés par la mémoire occupée par leurs pixels
+ * et les moins récemment utilisés sont retirés lorsque le budget est dépassé.
+ * La classe est utilisable depuis plusieurs threads.
+ */
+public class RenditionCache {
+    /** Part de la mémoire maximale de la JVM allouée au cache */
+    private static final int MEMORY_FRACTION = 8;
+    /** Instance partagée du cache */
+    private static final RenditionCache INSTANCE = new RenditionCache(Runtime.getRuntime().maxMemory() / MEMORY_FRACTION);
+
+    private final long capacity;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private final LinkedHashMap<String, BufferedImage> renditions;
+
+    /**
+     * Constructeur avec paramètres
+     * @param _capacity Budget du cache en octets
+     */
+    public RenditionCache(long _capacity) {
+        capacity = _capacity;
+        size = 0;
+        // access order: iteration starts with the least recently used rendition
+        renditions = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true);
+    }
+
+    /**
+     * Accesseur en lecture de l'instance partagée du cache
+     * @return Cache partagé des rendus
+     */
+    public static RenditionCache getInstance() {return INSTANCE;}
+
+    /**
+     * Méthode permettant de calculer la clé d'un rendu
+     * @param page Page rendue
+     * @param width Largeur cible (0 ou moins pour la déduire de la hauteur)
+     * @param height Hauteur cible (0 ou moins pour la déduire de la largeur)
+     * @param rotation Rotation en degrés (0, 90, 180 ou 270)
+     * @param algorithm Algorithme de mise à l'échelle
+     * @return Clé du rendu, ou null si la page n'est pas paresseuse (et ne peut donc pas être identifiée)
+     */
+    public static String key(Page page, int width, int height, int rotation, ImageScaler.Algorithm algorithm) {
+        if (page.getKey() == null) {
+            return null;
+        }
+        return page.getKey() + "@" + Math.max(0, width) + "x" + Math.max(0, height) + "r" + rotation + "q" + algorithm.ordinal();
+    }
+
+    /**
+     * Méthode permettant de récupérer le rendu d'une page, en le calculant s'il n'est pas dans le cache.
+     * Un rendu de même géométrie calculé avec un algorithme plus soigné que celui demandé est aussi accepté.
+     * @param page Page à rendre
+     * @param width Largeur cible (0 ou moins pour la déduire de la hauteur)
+     * @param height Hauteur cible (0 ou moins pour la déduire de la largeur)
+     * @param rotation Rotation en degrés (0, 90, 180 ou 270)
+     * @param algorithm Algorithme de mise à l'échelle
+     * @return Rendu de la page
+     */
+    public BufferedImage get(Page page, int width, int height, int rotation, ImageScaler.Algorithm algorithm) {
+        String key = key(page, width, height, rotation, algorithm);
+        if (key == null) {
+            return render(page, width, height, rotation, algorithm);
+        }
+        BufferedImage rendition = find(page, width, height, rotation, algorithm);
+        if (rendition == null) {
+            // rendered outside of the lock, two threads may rarely render the same page twice
+            rendition = render(page, width, height, rotation, algorithm);
+            put(key, rendition);
+        }
+        return rendition;
+    }
+
+    /**
+     * Méthode permettant de chercher dans le cache le rendu le plus soigné d'une page, à partir d'un algorithme donné
+     * @param page Page rendue
+     * @param width Largeur cible
+     * @param height Hauteur cible
+     * @param rotation Rotation en degrés
+     * @param algorithm Algorithme de mise à l'échelle le moins soigné accepté
+     * @return Rendu, ou null si aucun rendu suffisamment soigné n'est dans le cache
+     */
+    public synchronized BufferedImage find(Page page, int width, int height, int rotation, ImageScaler.Algorithm algorithm) {
+        ImageScaler.Algorithm[] algorithms = ImageScaler.Algorithm.values();
+        for (int i = algorithms.length - 1; i >= algorithm.ordinal(); i--) {
+            BufferedImage rendition = renditions.get(key(page, width, height, rotation, algorithms[i]));
+            if (rendition != null) {
+                hits++;
+                return rendition;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Méthode permettant de savoir si un rendu est dans le cache, sans modifier l'ordre LRU ni les compteurs
+     * @param key Clé du rendu
+     * @return true si le rendu est dans le cache
+     */
+    public synchronized boolean contains(String key) {
+        return renditions.containsKey(key);
+    }
+
+    /**
+     * Méthode permettant d'ajouter un rendu au cache.
+     * Les rendus plus lourds que le budget du cache ne sont pas conservés.
+     * @param key Clé du rendu
+     * @param rendition Rendu de la page
+     */
+    public synchronized void put(String key, BufferedImage rendition) {
+        long weight = DecodedImageCache.weight(rendition);
+        if (weight > capacity) {
+            return;
+        }
+        BufferedImage previous = renditions.put(key, rendition);
+        if (previous != null) {
+            size -= DecodedImageCache.weight(previous);
+        }
+        size += weight;
+        Iterator<Map.Entry<String, BufferedImage>> iterator = renditions.entrySet().iterator();
+        while (size > capacity && iterator.hasNext()) {
+            Map.Entry<String, BufferedImage> eldest = iterator.next();
+            size -= DecodedImageCache.weight(eldest.getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Méthode permettant de calculer le rendu d'une page, sans passer par le cache.
+     * La page est décodée à la résolution nécessaire (déduite de la hauteur cible si la largeur n'est pas donnée),
+     * mise à l'échelle puis tournée.
+     * @param page Page à rendre
+     * @param width Largeur cible (0 ou moins pour la déduire de la hauteur)
+     * @param height Hauteur cible (0 ou moins pour la déduire de la largeur)
+     * @param rotation Rotation en degrés (0, 90, 180 ou 270)
+     * @param algorithm Algorithme de mise à l'échelle
+     * @return Rendu de la page
+     */
+    public static BufferedImage render(Page page, int width, int height, int rotation, ImageScaler.Algorithm algorithm) {
+        int targetWidth = Math.max(0, width);
+        if (width <= 0 && height > 0 && page.getWidth() > 0 && page.getHeight() > 0) {
+            // only a height is given, the page is still subsampled to the width that matches it
+            targetWidth = (int) Math.ceil((double) page.getWidth() * height / page.getHeight());
+        }
+        Image source = page.getImage(targetWidth);
+        return rotate(scale(source, width, height, algorithm), rotation);
+    }
+
+    /**
+     * Méthode permettant de mettre une image à l'échelle d'une taille cible.
+     * La mise à l'échelle est effectuée par ImageScaler, immédiatement et sur tous les coeurs disponibles.
+     * @param image Image à mettre à l'échelle
+     * @param width Largeur cible (0 ou moins pour la déduire de la hauteur)
+     * @param height Hauteur cible (0 ou moins pour la déduire de la largeur)
+     * @param algorithm Algorithme de mise à l'échelle
+     * @return Image mise à l'échelle (l'image elle-même si elle est déjà à la bonne taille)
+     */
+    public static BufferedImage scale(Image image, int width, int height, ImageScaler.Algorithm algorithm) {
+        if (image.getWidth(null) < 0) {
+            // images created by the AWT toolkit are loaded asynchronously, wait for them
+            image = new ImageIcon(image).getImage();
+        }
+        int sourceWidth = image.getWidth(null);
+        int sourceHeight = image.getHeight(null);
+        if (width <= 0 && height <= 0) {
+            width = sourceWidth;
+            height = sourceHeight;
+        } else if (width <= 0) {
+            width = Math.max(1, (int) ((long) sourceWidth * height / sourceHeight));
+        } else if (height <= 0) {
+            height = Math.max(1, (int) ((long) sourceHeight * width / sourceWidth));
+        }
+        if (!(image instanceof BufferedImage)) {
+            BufferedImage buffered = new BufferedImage(sourceWidth, sourceHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+            Graphics2D g = buffered.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+            image = buffered;
+        }
+        if (width == sourceWidth && height == sourceHeight) {
+            return (BufferedImage) image;
+        }
+        return ImageScaler.scale((BufferedImage) image, width, height, algorithm);
+    }
+
+    /**
+     * Méthode permettant de tourner une image d'un quart de tour, d'un demi-tour ou de trois quarts de tour.
+     * Les dimensions de l'image sont échangées pour les rotations de 90 et 270 degrés.
+     * @param image Image à tourner
+     * @param rotation Rotation en degrés (0, 90, 180 ou 270)
+     * @return Image tournée (l'image elle-même pour une rotation nulle)
+     */
+    public static BufferedImage rotate(BufferedImage image, int rotation) {
+        if (rotation == 0) {
+            return image;
+        }
+        if (rotation != 90 && rotation != 180 && rotation != 270) {
+            throw new IllegalArgumentException("L'angle de rotation doit être égal à 0, 90, 180 ou 270");
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        boolean swap = rotation != 180;
+        BufferedImage rotated = new BufferedImage(swap ? h : w, swap ? w : h,
+            image.getTransparency() == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        AffineTransform tx = new AffineTransform();
+        tx.translate(rotated.getWidth() / 2.0, rotated.getHeight() / 2.0);
+        tx.quadrantRotate(rotation / 90);
+        tx.translate(-w / 2.0, -h / 2.0);
+        Graphics2D g = rotated.createGraphics();
+        g.drawImage(image, tx, null);
+        g.dispose();
+        return rotated;
+    }
+
+    /**
+     * Accesseur en lecture du budget du cache
+     * @return Budget du cache en octets
+     */
+    public long getCapacity() {return capacity;}
+    /**
+     * Accesseur en lecture de la mémoire occupée par le cache
+     * @return Poids total des rendus conservés, en octets
+     */
+    public synchronized long getSize() {return size;}
+    /**
+     * Accesseur en lecture du nombre de succès
+     * @return Nombre de recherches ayant trouvé le rendu dans le cache
+     */
+    public synchronized long getHits() {return hits;}
+    /**
+     * Accesseur en lecture du nombre d'échecs
+     * @return Nombre de recherches n'ayant pas trouvé le rendu dans le cache
+     */
+    public synchronized long getMisses() {return misses;}
+    /**
+     * Accesseur en lecture du nombre d'évictions
+     * @return Nombre de rendus retirés pour respecter le budget
+     */
+    public synchronized long getEvictions() {return evictions;}
+
+    /**
+     * Méthode permettant de décrire l'état du cache
+     * @return Description de l'état et des compteurs du cache
+     */
+    @Override
+    public synchronized String toString() {
+        return "RenditionCache[" + renditions.size() + " renditions, " + (size >> 20) + "/" + (capacity >> 20) + " MB, hits=" + hits
+            + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+}
@@ -0,0 +1,502 @@
+package edu.grimalkin.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.grimalkin.data.Comic;
+
+/**
+ * Une classe "SearchIndex" permettant de rechercher des comics par leur titre et leur nom de fichier pendant la frappe.
+ * Les dossiers du chemin ne sont pas indexés : partagés par toute la bibliothèque, ils correspondraient à tous les comics.
+ * Les textes sont normalisés (minuscules, sans accents, ponctuation remplacée par des espaces) puis découpés en mots,
+ * chaque mot distinct recevant un numéro et la liste des comics qui le contiennent. Les mots sont indexés :
+ * - dans un arbre préfixe (trie), pour les mots commençant par un terme de la recherche ;
+ * - par trigrammes, pour les mots contenant un terme (sous-chaîne) ou, si aucun mot ne commence par le terme
+ *   ni ne le contient, pour les mots proches du terme à une ou deux fautes de frappe près (lettres inversées comprises).
+ * Une recherche ne parcourt donc que les mots et comics concernés, et jamais toute la bibliothèque.
+ * Tous les termes de la recherche doivent correspondre ; les comics sont classés par qualité de correspondance
+ * (préfixe, puis sous-chaîne, puis approchante), puis dans l'ordre de leur ajout.
+ * L'index est mis à jour par add() et remove() ; les numéros des comics retirés et les mots qui ne sont plus utilisés
+ * restent dans l'index jusqu'à sa reconstruction, faite par remove() dès que plus de la moitié des numéros sont libérés.
+ * Les accès doivent se faire depuis un seul thread (l'EDT).
+ */
+public class SearchIndex {
+    /** Longueur des n-grammes */
+    private static final int GRAM = 3;
+    /** Longueur minimale d'un terme pour la recherche approchante */
+    private static final int FUZZY_LENGTH = 4;
+    /** Longueur d'un terme à partir de laquelle deux fautes sont tolérées, au lieu d'une */
+    private static final int TWO_TYPOS_LENGTH = 8;
+    /** Score d'un terme préfixe d'un mot */
+    private static final int PREFIX = 3;
+    /** Score d'un terme contenu dans un mot */
+    private static final int SUBSTRING = 2;
+    /** Score d'un terme proche d'un mot */
+    private static final int FUZZY = 1;
+
+    /** Comics indexés, par numéro (null si le comic a été retiré) */
+    private final List<Comic> documents = new ArrayList<Comic>();
+    /** Numéros des comics indexés */
+    private final Map<Comic, Integer> documentIds = new IdentityHashMap<Comic, Integer>();
+    /** Mots de chaque comic, par numéro de comic */
+    private final List<int[]> documentWords = new ArrayList<int[]>();
+    /** Numéros des mots du vocabulaire */
+    private final Map<String, Integer> vocabulary = new HashMap<String, Integer>();
+    /** Mots du vocabulaire, par numéro */
+    private final List<String> words = new ArrayList<String>();
+    /** Comics contenant chaque mot, par numéro de mot */
+    private final List<IntList> postings = new ArrayList<IntList>();
+    /** Mots contenant chaque trigramme */
+    private final Map<Long, IntList> grams = new HashMap<Long, IntList>();
+    /** Racine de l'arbre préfixe des mots */
+    private Node root = new Node();
+    /** Nombre de numéros de comics libérés par remove() depuis la dernière reconstruction */
+    private int removed;
+
+    /**
+     * Méthode permettant d'ajouter un comic à l'index (sans effet s'il y est déjà)
+     * @param comic Comic à indexer par son titre et son nom de fichier
+     */
+    public void add(Comic comic) {
+        if (documentIds.containsKey(comic)) {
+            return;
+        }
+        int id = documents.size();
+        documents.add(comic);
+        documentIds.put(comic, id);
+        Set<String> tokens = tokens(comic.getTitle() + " " + fileName(comic.getPath()));
+        int[] ids = new int[tokens.size()];
+        int i = 0;
+        for (String token : tokens) {
+            int word = word(token);
+            postings.get(word).add(id);
+            ids[i++] = word;
+        }
+        documentWords.add(ids);
+    }
+
+    /**
+     * Méthode permettant de retirer un comic de l'index.
+     * Lorsque plus de la moitié des numéros de comics sont libérés, l'index est reconstruit à partir des comics restants,
+     * pour récupérer les numéros et les mots qui ne sont plus utilisés.
+     * @param comic Comic à retirer
+     */
+    public void remove(Comic comic) {
+        Integer id = documentIds.remove(comic);
+        if (id == null) {
+            return;
+        }
+        for (int word : documentWords.get(id)) {
+            postings.get(word).remove(id);
+        }
+        documents.set(id, null);
+        documentWords.set(id, null);
+        if (++removed > documents.size() / 2) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Méthode permettant de vider l'index, avant de le reconstruire
+     */
+    public void clear() {
+        documents.clear();
+        documentIds.clear();
+        documentWords.clear();
+        vocabulary.clear();
+        words.clear();
+        postings.clear();
+        grams.clear();
+        root = new Node();
+        removed = 0;
+    }
+
+    /**
+     * Méthode permettant de reconstruire l'index à partir des comics restants, dans l'ordre de leur ajout
+     */
+    private void rebuild() {
+        List<Comic> remaining = new ArrayList<Comic>(documentIds.size());
+        for (Comic comic : documents) {
+            if (comic != null) {
+                remaining.add(comic);
+            }
+        }
+        clear();
+        for (Comic comic : remaining) {
+            add(comic);
+        }
+    }
+
+    /**
+     * Méthode permettant de rechercher les comics correspondant à un texte
+     * @param text Texte recherché, dont chaque mot est un terme de la recherche
+     * @return Comics correspondant à tous les termes, les meilleures correspondances en premier
+     * (tous les comics indexés si le texte ne contient aucun terme)
+     */
+    public List<Comic> query(String text) {
+        Set<String> terms = tokens(text);
+        List<Comic> results = new ArrayList<Comic>();
+        if (terms.isEmpty()) {
+            for (Comic comic : documents) {
+                if (comic != null) {
+                    results.add(comic);
+                }
+            }
+            return results;
+        }
+        // every term narrows the result down, the search stops as soon as nothing is left
+        List<BitSet[]> matches = new ArrayList<BitSet[]>();
+        BitSet all = null;
+        for (String term : terms) {
+            BitSet[] match = match(term);
+            BitSet any = (BitSet) match[0].clone();
+            any.or(match[1]);
+            any.or(match[2]);
+            if (all == null) {
+                all = any;
+            } else {
+                all.and(any);
+            }
+            if (all.isEmpty()) {
+                return results;
+            }
+            matches.add(match);
+        }
+        // counting sort on the score, the order of addition is kept within a score
+        List<List<Comic>> buckets = new ArrayList<List<Comic>>();
+        for (int score = 0; score <= PREFIX * terms.size(); score++) {
+            buckets.add(new ArrayList<Comic>());
+        }
+        for (int id = all.nextSetBit(0); id >= 0; id = all.nextSetBit(id + 1)) {
+            int score = 0;
+            for (BitSet[] match : matches) {
+                score += match[0].get(id) ? PREFIX : match[1].get(id) ? SUBSTRING : FUZZY;
+            }
+            buckets.get(score).add(documents.get(id));
+        }
+        for (int score = buckets.size() - 1; score >= 0; score--) {
+            results.addAll(buckets.get(score));
+        }
+        return results;
+    }
+
+    /**
+     * Méthode permettant de rechercher les comics correspondant à un terme
+     * @param term Terme normalisé
+     * @return Comics dont un mot commence par le terme, le contient, ou à défaut en est proche (trois ensembles de numéros)
+     */
+    private BitSet[] match(String term) {
+        BitSet prefix = new BitSet();
+        BitSet substring = new BitSet();
+        BitSet fuzzy = new BitSet();
+        Node node = root;
+        for (int i = 0; i < term.length() && node != null; i++) {
+            node = node.child(term.charAt(i));
+        }
+        if (node != null) {
+            collect(node, prefix);
+        }
+        if (term.length() >= GRAM) {
+            // candidates share the rarest trigram of the term, and are checked for the whole term
+            IntList rarest = null;
+            for (int i = 0; i + GRAM <= term.length(); i++) {
+                IntList posting = grams.get(gram(term, i));
+                if (posting == null) {
+                    rarest = null;
+                    break;
+                }
+                if (rarest == null || posting.size < rarest.size) {
+                    rarest = posting;
+                }
+            }
+            if (rarest != null) {
+                for (int i = 0; i < rarest.size; i++) {
+                    int word = rarest.values[i];
+                    if (words.get(word).contains(term)) {
+                        postings.get(word).addTo(substring);
+                    }
+                }
+            }
+        }
+        // typos are only looked for when the term matches no word as typed
+        if (term.length() >= FUZZY_LENGTH && prefix.isEmpty() && substring.isEmpty()) {
+            int typos = term.length() >= TWO_TYPOS_LENGTH ? 2 : 1;
+            // a word within k typos shares at least (n - GRAM * k) of the n trigrams of the term
+            int count = term.length() - GRAM + 1;
+            int threshold = Math.max(1, count - GRAM * typos);
+            int[] shared = new int[words.size()];
+            IntList candidates = new IntList();
+            for (int i = 0; i < count; i++) {
+                IntList posting = grams.get(gram(term, i));
+                if (posting == null) {
+                    continue;
+                }
+                for (int j = 0; j < posting.size; j++) {
+                    int word = posting.values[j];
+                    if (++shared[word] == threshold) {
+                        candidates.add(word);
+                    }
+                }
+            }
+            for (int i = 0; i < candidates.size; i++) {
+                int word = candidates.values[i];
+                if (withinTypos(term, words.get(word), typos)) {
+                    postings.get(word).addTo(fuzzy);
+                }
+            }
+        }
+        return new BitSet[] {prefix, substring, fuzzy};
+    }
+
+    /**
+     * Méthode permettant d'ajouter les comics des mots d'un sous-arbre de l'arbre préfixe
+     * @param node Racine du sous-arbre
+     * @param result Numéros des comics trouvés
+     */
+    private void collect(Node node, BitSet result) {
+        if (node.word >= 0) {
+            postings.get(node.word).addTo(result);
+        }
+        for (int i = 0; i < node.size; i++) {
+            collect(node.children[i], result);
+        }
+    }
+
+    /**
+     * Méthode permettant de récupérer le numéro d'un mot, en l'ajoutant au vocabulaire s'il n'y est pas
+     * @param token Mot normalisé
+     * @return Numéro du mot
+     */
+    private int word(String token) {
+        Integer id = vocabulary.get(token);
+        if (id != null) {
+            return id;
+        }
+        int word = words.size();
+        vocabulary.put(token, word);
+        words.add(token);
+        postings.add(new IntList());
+        Node node = root;
+        for (int i = 0; i < token.length(); i++) {
+            node = node.getOrCreate(token.charAt(i));
+        }
+        node.word = word;
+        for (int i = 0; i + GRAM <= token.length(); i++) {
+            IntList posting = grams.computeIfAbsent(gram(token, i), key -> new IntList());
+            // a trigram repeated in the word is only listed once
+            if (posting.size == 0 || posting.values[posting.size - 1] != word) {
+                posting.add(word);
+            }
+        }
+        return word;
+    }
+
+    /**
+     * Méthode permettant de normaliser un texte et de le découper en mots
+     * @param text Texte à découper
+     * @return Mots distincts du texte, en minuscules et sans accents
+     */
+    public static Set<String> tokens(String text) {
+        Set<String> tokens = new LinkedHashSet<String>();
+        if (text == null) {
+            return tokens;
+        }
+        // accents are split from their letters, and then dropped
+        String decomposed = isAscii(text) ? text : Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= decomposed.length(); i++) {
+            char c = i < decomposed.length() ? decomposed.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Méthode permettant de récupérer le nom de fichier d'un chemin, sans ses dossiers
+     * @param path Chemin, avec des séparateurs de n'importe quel système
+     * @return Dernier élément du chemin, ou null si le chemin est null
+     */
+    private static String fileName(String path) {
+        if (path == null) {
+            return null;
+        }
+        return path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\')) + 1);
+    }
+
+    /**
+     * Méthode permettant de savoir si un texte n'a que des caractères ASCII, qui n'ont pas besoin d'être décomposés
+     * @param text Texte
+     * @return true si tous les caractères du texte sont ASCII
+     */
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Méthode permettant de calculer la clé d'un trigramme
+     * @param text Texte
+     * @param start Début du trigramme dans le texte
+     * @return Caractères du trigramme, sur 16 bits chacun
+     */
+    private static long gram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    /**
+     * Méthode permettant de savoir si un terme est proche d'un mot ou du début d'un mot (distance d'édition bornée)
+     * @param term Terme recherché
+     * @param word Mot du vocabulaire
+     * @param typos Nombre maximal de fautes (insertions, suppressions, substitutions ou inversions de deux lettres)
+     * @return true si le terme est à au plus typos fautes du mot entier ou d'un de ses préfixes
+     */
+    private static boolean withinTypos(String term, String word, int typos) {
+        if (word.length() < term.length() - typos) {
+            return false;
+        }
+        // the word is cut after the term, as it is still being typed
+        int columns = Math.min(word.length(), term.length() + typos);
+        int[] beforePrevious = new int[columns + 1];
+        int[] previous = new int[columns + 1];
+        int[] current = new int[columns + 1];
+        for (int j = 0; j <= columns; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= term.length(); i++) {
+            current[0] = i;
+            int best = current[0];
+            for (int j = 1; j <= columns; j++) {
+                int cost = term.charAt(i - 1) == word.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && term.charAt(i - 1) == word.charAt(j - 2) && term.charAt(i - 2) == word.charAt(j - 1)) {
+                    current[j] = Math.min(current[j], beforePrevious[j - 2] + 1);
+                }
+                best = Math.min(best, current[j]);
+            }
+            if (best > typos) {
+                return false;
+            }
+            int[] swap = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = swap;
+        }
+        for (int j = Math.max(0, term.length() - typos); j <= columns; j++) {
+            if (previous[j] <= typos) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Noeud de l'arbre préfixe : enfants triés par caractère, et numéro du mot qui se termine sur le noeud
+     */
+    private static final class Node {
+        /** Caractères des enfants, triés */
+        private char[] keys = new char[0];
+        /** Enfants, dans l'ordre des caractères */
+        private Node[] children = new Node[0];
+        /** Nombre d'enfants */
+        private int size;
+        /** Numéro du mot qui se termine sur le noeud, ou -1 */
+        private int word = -1;
+
+        /**
+         * Méthode permettant de récupérer l'enfant d'un caractère
+         * @param c Caractère
+         * @return Enfant, ou null
+         */
+        private Node child(char c) {
+            int index = Arrays.binarySearch(keys, 0, size, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        /**
+         * Méthode permettant de récupérer l'enfant d'un caractère, en le créant s'il n'existe pas
+         * @param c Caractère
+         * @return Enfant
+         */
+        private Node getOrCreate(char c) {
+            int index = Arrays.binarySearch(keys, 0, size, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(2, size * 2));
+                children = Arrays.copyOf(children, keys.length);
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(children, index, children, index + 1, size - index);
+            keys[index] = c;
+            children[index] = new Node();
+            size++;
+            return children[index];
+        }
+    }
+
+    /**
+     * Liste d'entiers extensible, sans objets intermédiaires
+     */
+    private static final class IntList {
+        /** Valeurs */
+        private int[] values = new int[2];
+        /** Nombre de valeurs */
+        private int size;
+
+        /**
+         * Méthode permettant d'ajouter une valeur
+         * @param value Valeur à ajouter
+         */
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Méthode permettant de retirer une valeur (l'ordre des autres valeurs n'est pas conservé)
+         * @param value Valeur à retirer
+         */
+        private void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    values[i] = values[--size];
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Méthode permettant d'ajouter les valeurs à un ensemble
+         * @param set Ensemble de valeurs
+         */
+        private void addTo(BitSet set) {
+            for (int i = 0; i < size; i++) {
+                set.set(values[i]);
+            }
+        }
+    }
+}
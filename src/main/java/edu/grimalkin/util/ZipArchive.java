@@ -0,0 +1,492 @@
+package edu.grimalkin.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Une classe "ZipArchive" permettant de lire une archive ZIP (.cbz) sans passer par java.util.zip.ZipFile.
+ * Le répertoire central (y compris ZIP64) est lu directement depuis une projection mémoire du fichier,
+ * et les entrées sont lues par lectures positionnelles sur le FileChannel.
+ * Aucune lecture ne modifie l'état de l'archive : plusieurs threads peuvent donc lire des entrées différentes en même temps.
+ * Les entrées STORED (cas de la plupart des comics scannés) sont renvoyées sous forme de tranche de la projection mémoire, sans copie.
+ * Tant qu'un comic est ouvert (voir retain(File)), une seule archive reste ouverte pour son fichier et toutes les lectures de ses pages la partagent.
+ * @see <a href="https://pkware.cachefly.net/webdocs/casestudies/APPNOTE.TXT">ZIP File Format Specification</a>
+ */
+public class ZipArchive implements Closeable {
+    /** Signature de l'enregistrement de fin du répertoire central */
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    /** Signature du localisateur de fin du répertoire central ZIP64 */
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    /** Signature de l'enregistrement de fin du répertoire central ZIP64 */
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    /** Signature d'une entrée du répertoire central */
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    /** Signature d'un en-tête local */
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    /** Identifiant du champ extra ZIP64 */
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    /** Taille minimale de l'enregistrement de fin du répertoire central */
+    private static final int EOCD_SIZE = 22;
+    /** Taille de l'en-tête local hors nom et champ extra */
+    private static final int LOCAL_HEADER_SIZE = 30;
+    /** Méthode de compression STORED (aucune compression) */
+    public static final int STORED = 0;
+    /** Méthode de compression DEFLATED */
+    public static final int DEFLATED = 8;
+    /** Bit des drapeaux d'usage général indiquant un nom d'entrée encodé en UTF-8 */
+    private static final int UTF8_FLAG = 0x800;
+    /** Encodage des noms d'entrées sans le drapeau UTF-8 */
+    private static final Charset CP437 = Charset.forName("IBM437");
+    /** Archives partagées par les comics ouverts, par chemin absolu (accès sous verrou de la table) */
+    private static final Map<String, Shared> SHARED = new HashMap<String, Shared>();
+
+    private final File file;
+    private final FileChannel channel;
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByName;
+
+    /**
+     * Une classe "Entry" représentant une entrée du répertoire central d'une archive ZIP
+     */
+    public static class Entry {
+        private final String name;
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final long offset;
+
+        /**
+         * Constructeur avec paramètres
+         * @param _name Nom de l'entrée
+         * @param _method Méthode de compression
+         * @param _compressedSize Taille compressée
+         * @param _size Taille décompressée
+         * @param _offset Position de l'en-tête local dans l'archive
+         */
+        public Entry(String _name, int _method, long _compressedSize, long _size, long _offset) {
+            name = _name;
+            method = _method;
+            compressedSize = _compressedSize;
+            size = _size;
+            offset = _offset;
+        }
+
+        /**
+         * Accesseur en lecture du nom de l'entrée
+         * @return Nom de l'entrée
+         */
+        public String getName() {return name;}
+        /**
+         * Accesseur en lecture de la méthode de compression
+         * @return Méthode de compression (STORED, DEFLATED, ...)
+         */
+        public int getMethod() {return method;}
+        /**
+         * Accesseur en lecture de la taille compressée
+         * @return Taille compressée
+         */
+        public long getCompressedSize() {return compressedSize;}
+        /**
+         * Accesseur en lecture de la taille décompressée
+         * @return Taille décompressée
+         */
+        public long getSize() {return size;}
+        /**
+         * Accesseur en lecture de la position de l'en-tête local
+         * @return Position de l'en-tête local dans l'archive
+         */
+        public long getOffset() {return offset;}
+        /**
+         * Méthode permettant de savoir si l'entrée est un dossier
+         * @return true si l'entrée est un dossier
+         */
+        public boolean isDirectory() {return name.endsWith("/");}
+    }
+
+    /**
+     * Une classe "Shared" représentant l'archive partagée d'un fichier et le nombre de comics ouverts qui la retiennent
+     */
+    private static final class Shared {
+        /** Nombre de comics ouverts retenant l'archive */
+        private int references;
+        /** Archive ouverte, ou null si elle n'a pas encore été lue */
+        private ZipArchive archive;
+    }
+
+    /**
+     * Constructeur de la classe ZipArchive
+     * Ouvre l'archive et lit son répertoire central.
+     * @param _file Archive à ouvrir
+     * @throws IOException Retourne une exception si l'archive n'a pas pu être lue ou n'est pas une archive ZIP valide
+     */
+    public ZipArchive(File _file) throws IOException {
+        file = _file;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            entries = Collections.unmodifiableList(readCentralDirectory());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        entriesByName = new HashMap<String, Entry>();
+        for (Entry entry : entries) {
+            entriesByName.put(entry.getName(), entry);
+        }
+    }
+
+    /**
+     * Accesseur en lecture de l'archive
+     * @return Fichier de l'archive
+     */
+    public File getFile() {return file;}
+    /**
+     * Accesseur en lecture des entrées, dans l'ordre du répertoire central
+     * @return Liste non modifiable des entrées
+     */
+    public List<Entry> getEntries() {return entries;}
+    /**
+     * Méthode permettant de récupérer une entrée via son nom
+     * @param name Nom de l'entrée
+     * @return Entrée correspondante, ou null si elle n'existe pas
+     */
+    public Entry getEntry(String name) {return entriesByName.get(name);}
+
+    /**
+     * Méthode permettant de lire le contenu décompressé d'une entrée.
+     * Une entrée STORED est renvoyée sous forme de tranche en lecture seule de la projection mémoire (sans copie).
+     * @param entry Entrée à lire
+     * @return Contenu décompressé de l'entrée
+     * @throws IOException Retourne une exception si l'entrée n'a pas pu être lue
+     */
+    public ByteBuffer read(Entry entry) throws IOException {
+        return read(channel, entry.getOffset(), entry.getMethod(), entry.getCompressedSize(), entry.getSize(), entry.getSize());
+    }
+
+    /**
+     * Méthode permettant de lire uniquement les premiers octets décompressés d'une entrée,
+     * par exemple pour sonder l'en-tête d'une image sans la décompresser entièrement.
+     * @param entry Entrée à lire
+     * @param length Nombre maximal d'octets à lire
+     * @return Premiers octets de l'entrée (au plus length octets, moins si l'entrée est plus courte)
+     * @throws IOException Retourne une exception si l'entrée n'a pas pu être lue
+     */
+    public ByteBuffer readHead(Entry entry, int length) throws IOException {
+        return read(channel, entry.getOffset(), entry.getMethod(), entry.getCompressedSize(), entry.getSize(), Math.min(length, entry.getSize()));
+    }
+
+    /**
+     * Méthode permettant de lire une entrée directement à partir de la position de son en-tête local,
+     * sans lire le répertoire central de l'archive.
+     * @param file Archive contenant l'entrée
+     * @param offset Position de l'en-tête local dans l'archive
+     * @param compressedSize Taille compressée de l'entrée
+     * @param size Taille décompressée de l'entrée
+     * @return Contenu décompressé de l'entrée
+     * @throws IOException Retourne une exception si l'entrée n'a pas pu être lue
+     */
+    public static ByteBuffer read(File file, long offset, long compressedSize, long size) throws IOException {
+        // the compression method is read from the local header
+        return read(file, offset, compressedSize, size, size);
+    }
+
+    /**
+     * Méthode permettant de lire uniquement les premiers octets décompressés d'une entrée, directement à partir
+     * de la position de son en-tête local, sans lire le répertoire central de l'archive.
+     * @param file Archive contenant l'entrée
+     * @param offset Position de l'en-tête local dans l'archive
+     * @param compressedSize Taille compressée de l'entrée
+     * @param size Taille décompressée de l'entrée
+     * @param length Nombre maximal d'octets à lire
+     * @return Premiers octets de l'entrée (au plus length octets, moins si l'entrée est plus courte)
+     * @throws IOException Retourne une exception si l'entrée n'a pas pu être lue
+     */
+    public static ByteBuffer readHead(File file, long offset, long compressedSize, long size, int length) throws IOException {
+        return read(file, offset, compressedSize, size, Math.min(length, size));
+    }
+
+    /**
+     * Méthode permettant de retenir l'archive d'un comic ouvert : tant qu'elle est retenue, une seule archive reste ouverte
+     * pour ce fichier et les lectures par position (read(File, ...), readHead(File, ...)) ainsi que shared(File) l'utilisent.
+     * L'archive n'est ouverte qu'à la première lecture, et fermée lorsque la dernière référence est relâchée.
+     * @param file Archive du comic ouvert
+     * @return Référence à fermer à la fermeture du comic (un second appel de close() est sans effet)
+     */
+    public static Closeable retain(File file) {
+        String path = file.getAbsolutePath();
+        synchronized (SHARED) {
+            SHARED.computeIfAbsent(path, p -> new Shared()).references++;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                release(path);
+            }
+        };
+    }
+
+    /**
+     * Méthode permettant de récupérer l'archive partagée d'un fichier retenu par un comic ouvert, en l'ouvrant si besoin.
+     * L'archive renvoyée ne doit pas être fermée par l'appelant.
+     * @param file Archive à récupérer
+     * @return Archive partagée, ou null si le fichier n'est retenu par aucun comic ouvert
+     * @throws IOException Retourne une exception si l'archive n'a pas pu être ouverte
+     * @see #retain(File)
+     */
+    public static ZipArchive shared(File file) throws IOException {
+        synchronized (SHARED) {
+            Shared shared = SHARED.get(file.getAbsolutePath());
+            if (shared == null) {
+                return null;
+            }
+            // the channel of a reader interrupted during a read is closed, the archive is then opened again
+            if (shared.archive == null || !shared.archive.channel.isOpen()) {
+                shared.archive = new ZipArchive(file);
+            }
+            return shared.archive;
+        }
+    }
+
+    /**
+     * Méthode permettant de relâcher une référence à une archive partagée, fermée lorsqu'elle n'est plus retenue
+     * @param path Chemin absolu de l'archive
+     * @throws IOException Retourne une exception si l'archive n'a pas pu être fermée
+     */
+    private static void release(String path) throws IOException {
+        ZipArchive archive = null;
+        synchronized (SHARED) {
+            Shared shared = SHARED.get(path);
+            if (shared != null && --shared.references == 0) {
+                SHARED.remove(path);
+                archive = shared.archive;
+            }
+        }
+        if (archive != null) {
+            archive.close();
+        }
+    }
+
+    /**
+     * Méthode permettant de lire une entrée à partir de la position de son en-tête local, dans l'archive partagée
+     * si le fichier est retenu par un comic ouvert, ou sinon dans un canal ouvert le temps de la lecture
+     * @param file Archive contenant l'entrée
+     * @param offset Position de l'en-tête local dans l'archive
+     * @param compressedSize Taille compressée de l'entrée
+     * @param size Taille décompressée de l'entrée
+     * @param limit Nombre d'octets décompressés à lire depuis le début de l'entrée
+     * @return Contenu décompressé de l'entrée, tronqué à limit octets
+     * @throws IOException Retourne une exception si l'entrée n'a pas pu être lue
+     */
+    private static ByteBuffer read(File file, long offset, long compressedSize, long size, long limit) throws IOException {
+        ZipArchive shared = shared(file);
+        if (shared != null) {
+            try {
+                return read(shared.channel, offset, -1, compressedSize, size, limit);
+            } catch (ClosedChannelException e) {
+                // closed by the comic being closed or by another interrupted reader
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return read(channel, offset, -1, compressedSize, size, limit);
+        }
+    }
+
+    /**
+     * Méthode permettant de fermer l'archive.
+     * Les tranches déjà renvoyées par read() restent valides après la fermeture.
+     * @throws IOException Retourne une exception si l'archive n'a pas pu être fermée
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Méthode permettant de lire une entrée à partir de son en-tête local
+     * @param channel Canal de l'archive
+     * @param offset Position de l'en-tête local
+     * @param method Méthode de compression, ou -1 pour la lire dans l'en-tête local
+     * @param compressedSize Taille compressée
+     * @param size Taille décompressée
+     * @param limit Nombre d'octets décompressés à lire depuis le début de l'entrée (size pour l'entrée entière)
+     * @return Contenu décompressé de l'entrée, tronqué à limit octets
+     * @throws IOException Retourne une exception si l'entrée n'a pas pu être lue
+     */
+    private static ByteBuffer read(FileChannel channel, long offset, int method, long compressedSize, long size, long limit) throws IOException {
+        ByteBuffer header = readFully(channel, offset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_SIGNATURE) {
+            throw new IOException("Invalid local header at offset " + offset);
+        }
+        if (method < 0) {
+            method = header.getShort(8) & 0xFFFF;
+        }
+        long dataOffset = offset + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+        if (compressedSize > Integer.MAX_VALUE || size > Integer.MAX_VALUE) {
+            throw new IOException("Entry too large: " + size + " bytes");
+        }
+        switch (method) {
+            case STORED:
+                // zero copy: the mapping stays valid even once the channel is closed
+                return channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, limit).asReadOnlyBuffer();
+            case DEFLATED:
+                boolean partial = limit < size;
+                // a partial read only needs about as many compressed bytes as requested, plus the block headers
+                int input = partial ? (int) Math.min(compressedSize, limit + 1024) : (int) compressedSize;
+                ByteBuffer compressed = readFully(channel, dataOffset, input);
+                byte[] output = new byte[(int) limit];
+                Inflater inflater = new Inflater(true);
+                try {
+                    inflater.setInput(compressed);
+                    int total = 0;
+                    while (total < output.length && !inflater.finished()) {
+                        int len = inflater.inflate(output, total, output.length - total);
+                        if (len == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                            if (partial) {
+                                return ByteBuffer.wrap(output, 0, total);
+                            }
+                            throw new IOException("Truncated deflate stream at offset " + offset);
+                        }
+                        total += len;
+                    }
+                } catch (DataFormatException e) {
+                    throw new IOException("Invalid deflate stream at offset " + offset, e);
+                } finally {
+                    inflater.end();
+                }
+                return ByteBuffer.wrap(output);
+            default:
+                throw new IOException("Unsupported compression method " + method + " at offset " + offset);
+        }
+    }
+
+    /**
+     * Méthode permettant de lire le répertoire central de l'archive (ZIP ou ZIP64)
+     * @return Liste des entrées, dans l'ordre du répertoire central
+     * @throws IOException Retourne une exception si le répertoire central n'a pas pu être lu
+     */
+    private List<Entry> readCentralDirectory() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < EOCD_SIZE) {
+            throw new IOException(file.getName() + " is not a zip archive");
+        }
+        // the end of central directory record is followed by a comment of at most 65535 bytes
+        int tailSize = (int) Math.min(fileSize, EOCD_SIZE + 0xFFFF);
+        long tailOffset = fileSize - tailSize;
+        ByteBuffer tail = channel.map(FileChannel.MapMode.READ_ONLY, tailOffset, tailSize).order(ByteOrder.LITTLE_ENDIAN);
+        int eocd = -1;
+        for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+            // the signature may also appear in the comment, the record must end where its comment ends the file
+            if (tail.getInt(i) == EOCD_SIGNATURE && i + EOCD_SIZE + (tail.getShort(i + 20) & 0xFFFF) == tailSize) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new IOException(file.getName() + " is not a zip archive");
+        }
+        long count = tail.getShort(eocd + 10) & 0xFFFF;
+        long cdSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long cdOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+        // ZIP64: the locator sits right before the end of central directory record
+        long locatorOffset = tailOffset + eocd - 20;
+        if (locatorOffset >= 0) {
+            ByteBuffer locator = readFully(channel, locatorOffset, 20);
+            if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                ByteBuffer zip64 = readFully(channel, locator.getLong(8), 56);
+                if (zip64.getInt(0) != ZIP64_EOCD_SIGNATURE) {
+                    throw new IOException("Invalid zip64 end of central directory in " + file.getName());
+                }
+                count = zip64.getLong(32);
+                cdSize = zip64.getLong(40);
+                cdOffset = zip64.getLong(48);
+            }
+        }
+        if (cdOffset + cdSize > fileSize) {
+            throw new IOException("Invalid central directory in " + file.getName());
+        }
+        ByteBuffer cd = channel.map(FileChannel.MapMode.READ_ONLY, cdOffset, cdSize).order(ByteOrder.LITTLE_ENDIAN);
+        List<Entry> result = new ArrayList<Entry>((int) Math.min(count, 1 << 16));
+        int pos = 0;
+        for (long i = 0; i < count; i++) {
+            if (cd.getInt(pos) != CENTRAL_SIGNATURE) {
+                throw new IOException("Invalid central directory entry in " + file.getName());
+            }
+            int flags = cd.getShort(pos + 8) & 0xFFFF;
+            int method = cd.getShort(pos + 10) & 0xFFFF;
+            long compressedSize = cd.getInt(pos + 20) & 0xFFFFFFFFL;
+            long size = cd.getInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLength = cd.getShort(pos + 28) & 0xFFFF;
+            int extraLength = cd.getShort(pos + 30) & 0xFFFF;
+            int commentLength = cd.getShort(pos + 32) & 0xFFFF;
+            long offset = cd.getInt(pos + 42) & 0xFFFFFFFFL;
+            byte[] name = new byte[nameLength];
+            cd.get(pos + 46, name);
+            // ZIP64 extra field: only the values saturated in the record are present, in this order
+            int extra = pos + 46 + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = cd.getShort(extra) & 0xFFFF;
+                int length = cd.getShort(extra + 2) & 0xFFFF;
+                if (id == ZIP64_EXTRA_ID) {
+                    int field = extra + 4;
+                    if (size == 0xFFFFFFFFL) {
+                        size = cd.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == 0xFFFFFFFFL) {
+                        compressedSize = cd.getLong(field);
+                        field += 8;
+                    }
+                    if (offset == 0xFFFFFFFFL) {
+                        offset = cd.getLong(field);
+                    }
+                    break;
+                }
+                extra += 4 + length;
+            }
+            // names are only UTF-8 when the language encoding flag is set, CP437 otherwise
+            String entryName = new String(name, (flags & UTF8_FLAG) != 0 ? StandardCharsets.UTF_8 : CP437);
+            result.add(new Entry(entryName, method, compressedSize, size, offset));
+            pos += 46 + nameLength + extraLength + commentLength;
+        }
+        return result;
+    }
+
+    /**
+     * Méthode permettant de lire un bloc de l'archive par lecture positionnelle
+     * @param channel Canal de l'archive
+     * @param position Position du bloc
+     * @param length Taille du bloc
+     * @return Bloc lu, en little endian
+     * @throws IOException Retourne une exception si le bloc n'a pas pu être lu en entier
+     */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            int len = channel.read(buffer, position + buffer.position());
+            if (len < 0) {
+                throw new IOException("Unexpected end of archive at offset " + position);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -1,21 +1,24 @@
 package edu.grimalkin.util;
 
-import java.awt.Image;
-import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.function.IntConsumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import javax.imageio.ImageIO;
 
-import com.github.junrar.Junrar;
+import com.github.junrar.Archive;
 import com.github.junrar.exception.RarException;
+import com.github.junrar.rarfile.FileHeader;
 
 import edu.grimalkin.data.Page;
 
@@ -26,6 +29,11 @@ import edu.grimalkin.data.Page;
  * @see <a href="https://commons.apache.org/proper/commons-compress/">Apache Commons Compress</a>
  */
 public class ZipUtil {
+    /** Cache hors tas des données compressées des pages, consulté avant toute lecture d'archive */
+    private static final PageByteCache COMPRESSED_PAGES = new PageByteCache(Runtime.getRuntime().maxMemory() / 4);
+    /** Nombre d'images précédant l'entrée demandée conservées dans le cache lors de la lecture d'une archive RAR "solide" */
+    private static final int SOLID_WINDOW_BEHIND = 2;
+
     /**
      * Constructeur privé pour empêcher l'instanciation de la classe.
      * @throws IllegalStateException
@@ -70,78 +78,478 @@ public class ZipUtil {
     }
 
     /**
-     * Méthode permettant de décompresser un fichier dans une liste de pages donnée en paramètre sans créer de fichier temporaire.
-     * Les fonctions ImageIO.read() et ImageIO.write() ne sont pas utilisées en raison de leur lenteur.
-     * Il leur est préféré l'utilisation de la classe Toolkit qui permet de créer une image à partir d'un tableau de bytes.
+     * Méthode permettant d'indexer les pages d'un fichier dans une liste de pages donnée en paramètre sans décompresser les images.
+     * Seul le répertoire central de l'archive est lu : chaque page ajoutée est une page paresseuse (nom de l'entrée, tailles, position)
+     * dont l'image ne sera décodée qu'au premier appel de Page.getImage().
+     * Le temps d'ouverture ne dépend donc plus du nombre de pages.
+     * Les dimensions, le format et le type de couleur de chaque page sont obtenus en ne lisant que les premiers octets de l'entrée.
+     * Les pages sont ajoutées dans l'ordre naturel des noms d'entrées.
      * @param source Fichier à décompresser
-     * @param destination Dossier de destination
+     * @param destination Liste de pages en destination
      * @throws IOException Retourne une exception si le fichier n'a pas pu être lu
+     * @see ZipArchive
+     * @see #readImage(Page)
      */
     public static void unzip(File source, List<Page> destination) throws IOException {
-        try (ZipFile zipFile = new ZipFile(source)) {
-            Enumeration<? extends ZipEntry> entries = zipFile.entries();
-            System.out.println("entries: " + entries);
-            // Write each entry to an image
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                System.out.println("entry: " + entry);
-                ImageIO.setUseCache(false);
-                if (entry.isDirectory()) {
-                    System.out.println("The .cbz file should not contain a directory. Please check your .cbz file");
-                }
-                // if entry is not an image, skip it
-                if (!entry.getName().endsWith(".jpg") && !entry.getName().endsWith(".png")) {
-                    continue;
-                }
-                // write entry to image object
-                try (InputStream in = zipFile.getInputStream(entry);
-                    OutputStream out = new ByteArrayOutputStream()) {
-                    byte[] buffer = new byte[1024];
-                    int len;
-                    while ((len = in.read(buffer)) >= 0) {
-                        out.write(buffer, 0, len);
-                    }
-                    // convert output stream to buffered image
-                    Image image = Toolkit.getDefaultToolkit().createImage(((ByteArrayOutputStream) out).toByteArray());
-                    // add image to comic
-                    // cut off the file extension
-                    String id = entry.getName().substring(0, entry.getName().lastIndexOf("."));
-                    destination.add(new Page(id, image.getWidth(null), image.getHeight(null), image));
-                }
-            }
-        }
+        List<Page> pages = index(source);
+        probe(source, pages, null);
+        destination.addAll(pages);
     }
 
-    
     /** 
-     * Méthode permettant de décompresser un fichier RAR dans une list de pages en destination donné en paramètre.
+     * Méthode permettant d'indexer les pages d'un fichier RAR dans une liste de pages en destination donnée en paramètre.
+     * Seuls les en-têtes de l'archive sont lus, sans extraction sur le disque : chaque page ajoutée est une page paresseuse
+     * dont l'entrée sera décompressée en mémoire au premier appel de Page.getImage().
+     * Seules les entrées de l'archive sont prises en compte, et les pages sont ajoutées dans l'ordre naturel des noms d'entrées.
+     * Si l'archive est "solide" (détecté via l'en-tête principal), ses premières images sont lues en une seule passe séquentielle
+     * et leurs données compressées sont conservées dans le cache des pages, pour ne plus avoir à solliciter le décodeur RAR.
      * @param source Fichier à décompresser
      * @param destination Liste de pages en destination
      * @throws IOException Retourne une exception si le fichier n'a pas pu lu
      * @throws RarException Retourne une exception si le fichier n'a pas pu être décompressé
      */
     public static void unrar(File source, List<Page> destination) throws IOException, RarException {
-        Junrar.extract(source, source.getParentFile());
-        File[] files = source.getParentFile().listFiles();
-        for (File file : files) {
-            if (file.getName().endsWith(".jpg") || file.getName().endsWith(".png")) {
-                ImageIO.setUseCache(false);
-                // write entry to image object
-                try (InputStream in = file.toURI().toURL().openStream();
-                    OutputStream out = new ByteArrayOutputStream()) {
-                    byte[] buffer = new byte[1024];
-                    int len;
-                    while ((len = in.read(buffer)) >= 0) {
-                        out.write(buffer, 0, len);
+        List<Page> pages = index(source);
+        probe(source, pages, null);
+        destination.addAll(pages);
+    }
+
+    /**
+     * Méthode permettant de lister les pages d'une archive (ZIP ou RAR) sans lire le contenu des entrées.
+     * Seul le répertoire central (ZIP) ou les en-têtes (RAR) de l'archive sont lus : les pages renvoyées sont des pages paresseuses
+     * dont les dimensions ne sont pas encore connues, triées dans l'ordre naturel des noms d'entrées.
+     * @param source Archive à indexer
+     * @return Pages de l'archive
+     * @throws IOException Retourne une exception si l'archive n'a pas pu être lue
+     * @see #probe(File, List, IntConsumer)
+     */
+    public static List<Page> index(File source) throws IOException {
+        List<Page> pages = new ArrayList<Page>();
+        if (isRar(source.getPath())) {
+            try (Archive archive = new Archive(source)) {
+                for (FileHeader header : archive.getFileHeaders()) {
+                    if (header.isDirectory() || !isImage(header.getFileName())) {
+                        continue;
+                    }
+                    pages.add(new Page(pageId(header.getFileName()), source.getAbsolutePath(), header.getFileName(), header.getFullPackSize(), header.getFullUnpackSize(), -1));
+                }
+            } catch (RarException e) {
+                throw new IOException("Could not read " + source.getName(), e);
+            }
+        } else {
+            // the archive of an opened comic is shared with the reads of its pages
+            ZipArchive shared = ZipArchive.shared(source);
+            try (ZipArchive own = shared == null ? new ZipArchive(source) : null) {
+                ZipArchive archive = shared != null ? shared : own;
+                for (ZipArchive.Entry entry : archive.getEntries()) {
+                    // directories and entries that are not images are skipped
+                    if (entry.isDirectory() || !isImage(entry.getName())) {
+                        continue;
+                    }
+                    pages.add(new Page(pageId(entry.getName()), source.getAbsolutePath(), entry.getName(), entry.getCompressedSize(), entry.getSize(), entry.getOffset()));
+                }
+            }
+        }
+        sortPages(pages);
+        return pages;
+    }
+
+    /**
+     * Méthode permettant de renseigner les dimensions, le format et le type de couleur des pages d'une archive.
+     * Pour une archive ZIP, seuls les premiers octets de chaque entrée sont lus.
+     * Les premières images d'une archive RAR "solide" sont lues en une seule passe séquentielle, dans la limite d'une fenêtre
+     * bornée par le budget du cache des pages, et leurs données compressées y sont conservées pour ne plus avoir à solliciter
+     * le décodeur RAR ; seules ces pages sont alors sondées ;
+     * les pages d'une archive RAR non solide ne sont pas sondées (leurs dimensions seront connues à leur premier décodage).
+     * Les pages dont les dimensions sont déjà connues sont ignorées.
+     * @param source Archive contenant les pages
+     * @param pages Pages à renseigner
+     * @param progress Appelé après chaque page avec le nombre de pages traitées (peut être null)
+     * @throws IOException Retourne une exception si l'archive n'a pas pu être lue
+     * @throws InterruptedIOException Retourne une exception si le thread a été interrompu (chargement annulé)
+     */
+    public static void probe(File source, List<Page> pages, IntConsumer progress) throws IOException {
+        if (isRar(source.getPath())) {
+            // the first window of a solid archive may already have been ingested, by a previous opening or a page read
+            boolean ingested = pages.isEmpty() || COMPRESSED_PAGES.contains(pages.get(0).getKey());
+            if (!ingested) {
+                try (Archive archive = new Archive(source)) {
+                    // solid archive: read the first pages once now rather than once per page later
+                    if (archive.getMainHeader().isSolid()) {
+                        ingestSolid(archive, source, null);
+                    }
+                } catch (RarException e) {
+                    throw new IOException("Could not read " + source.getName(), e);
+                }
+            }
+            for (int i = 0; i < pages.size(); i++) {
+                Page page = pages.get(i);
+                // the headers of the cached pages can be probed for free
+                ByteBuffer cached = COMPRESSED_PAGES.get(page.getKey());
+                if (cached != null && (page.getWidth() <= 0 || page.getHeight() <= 0)) {
+                    setInfo(page, ImageProbe.probe(cached));
+                }
+                if (progress != null) {
+                    progress.accept(i + 1);
+                }
+            }
+            return;
+        }
+        ZipArchive shared = ZipArchive.shared(source);
+        try (ZipArchive own = shared == null ? new ZipArchive(source) : null) {
+            ZipArchive archive = shared != null ? shared : own;
+            for (int i = 0; i < pages.size(); i++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Indexing of " + source.getName() + " interrupted");
+                }
+                Page page = pages.get(i);
+                ZipArchive.Entry entry = archive.getEntry(page.getEntryName());
+                if (entry != null && (page.getWidth() <= 0 || page.getHeight() <= 0)) {
+                    // only the first bytes of the entry are read to get the page dimensions
+                    int length = ImageProbe.HEAD_SIZE;
+                    ImageProbe.Info info = ImageProbe.probe(archive.readHead(entry, length));
+                    while (info == null && length < ImageProbe.MAX_HEAD_SIZE && length < entry.getSize()) {
+                        length *= 4;
+                        info = ImageProbe.probe(archive.readHead(entry, length));
+                    }
+                    setInfo(page, info);
+                }
+                if (progress != null) {
+                    progress.accept(i + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Méthode permettant de renseigner les dimensions d'une seule page, sans la décoder.
+     * Une page déjà lue est sondée depuis le cache des données compressées, et seuls les premiers octets d'une entrée ZIP
+     * sont lus ; une entrée RAR, qui ne peut pas être lue partiellement, est lue entièrement et ajoutée au cache,
+     * où son décodage la retrouvera.
+     * @param page Page paresseuse à sonder
+     * @return true si les dimensions de la page sont connues
+     * @throws IOException Retourne une exception si l'entrée n'a pas pu être lue
+     */
+    public static boolean probe(Page page) throws IOException {
+        if (page.getWidth() > 0 && page.getHeight() > 0) {
+            return true;
+        }
+        if (page.getEntryName() == null) {
+            return false;
+        }
+        ByteBuffer cached = COMPRESSED_PAGES.get(page.getKey());
+        if (cached != null) {
+            setInfo(page, ImageProbe.probe(cached));
+        } else if (isRar(page.getArchive())) {
+            setInfo(page, ImageProbe.probe(readEntry(page)));
+        } else {
+            File file = new File(page.getArchive());
+            int length = ImageProbe.HEAD_SIZE;
+            ImageProbe.Info info = ImageProbe.probe(ZipArchive.readHead(file, page.getOffset(), page.getCompressedSize(), page.getSize(), length));
+            while (info == null && length < ImageProbe.MAX_HEAD_SIZE && length < page.getSize()) {
+                length *= 4;
+                info = ImageProbe.probe(ZipArchive.readHead(file, page.getOffset(), page.getCompressedSize(), page.getSize(), length));
+            }
+            setInfo(page, info);
+        }
+        return page.getWidth() > 0 && page.getHeight() > 0;
+    }
+
+    /**
+     * Méthode permettant de lire le contenu d'une seule entrée d'archive correspondant à une page paresseuse.
+     * Le cache hors tas des données compressées est consulté en premier : une page déjà lue n'est jamais relue sur le disque.
+     * Sinon, une entrée ZIP est lue directement à partir de la position de son en-tête local, sans relire le répertoire central,
+     * dans l'archive partagée du comic ouvert (voir ZipArchive.retain(File)),
+     * et une entrée RAR est décompressée en mémoire par junrar ; les données lues sont ensuite ajoutées au cache.
+     * @param page Page paresseuse à lire
+     * @return Contenu décompressé de l'entrée
+     * @throws IOException Retourne une exception si l'entrée n'a pas pu être lue
+     */
+    public static ByteBuffer readEntry(Page page) throws IOException {
+        ByteBuffer cached = COMPRESSED_PAGES.get(page.getKey());
+        if (cached != null) {
+            return cached;
+        }
+        ByteBuffer data;
+        if (isRar(page.getArchive())) {
+            data = readRarEntry(new File(page.getArchive()), page.getEntryName());
+        } else {
+            data = ZipArchive.read(new File(page.getArchive()), page.getOffset(), page.getCompressedSize(), page.getSize());
+        }
+        // solid archives have already been ingested into the cache
+        if (!COMPRESSED_PAGES.contains(page.getKey())) {
+            COMPRESSED_PAGES.put(page.getKey(), data);
+        }
+        return data;
+    }
+
+    /**
+     * Accesseur en lecture du cache hors tas des données compressées des pages
+     * @return Cache des données compressées
+     */
+    public static PageByteCache getCompressedPageCache() {return COMPRESSED_PAGES;}
+
+    /**
+     * Méthode permettant de lire une seule entrée d'une archive et de la convertir en image.
+     * L'image est entièrement décodée par ImageDecoder : ses dimensions sont donc connues dès le retour de la méthode.
+     * @param page Page paresseuse à lire
+     * @return Image correspondant à l'entrée
+     * @throws IOException Retourne une exception si l'entrée n'a pas pu être lue
+     * @see ImageDecoder#decode(ByteBuffer)
+     */
+    public static BufferedImage readImage(Page page) throws IOException {
+        return readImage(page, 0, 0);
+    }
+
+    /**
+     * Méthode permettant de lire une seule entrée d'une archive et de la décoder à la résolution nécessaire pour une taille cible.
+     * Si les dimensions réelles de la page ne sont pas encore connues, elles sont renseignées par sondage de l'en-tête de l'entrée.
+     * @param page Page paresseuse à lire
+     * @param targetWidth Largeur cible (0 ou moins si la largeur n'est pas contrainte)
+     * @param targetHeight Hauteur cible (0 ou moins si la hauteur n'est pas contrainte)
+     * @return Image correspondant à l'entrée, au moins aussi grande que la taille cible
+     * @throws IOException Retourne une exception si l'entrée n'a pas pu être lue
+     * @see ImageDecoder#decode(ByteBuffer, int, int)
+     */
+    public static BufferedImage readImage(Page page, int targetWidth, int targetHeight) throws IOException {
+        ByteBuffer data = readEntry(page);
+        if (page.getWidth() <= 0 || page.getHeight() <= 0) {
+            setInfo(page, ImageProbe.probe(data));
+        }
+        return ImageDecoder.decode(data, targetWidth, targetHeight);
+    }
+
+    /**
+     * Méthode permettant de lire la couverture d'une archive, c'est-à-dire sa première page dans l'ordre naturel des noms d'entrées,
+     * mise à l'échelle d'une largeur donnée.
+     * La première page est cherchée dans le répertoire central (ZIP) ou les en-têtes (RAR), sans trier ni créer les autres pages ;
+     * seule son entrée est lue (jusqu'à elle seulement pour une archive RAR "solide"), puis décodée par sous-échantillonnage.
+     * Ni les données lues ni l'image décodée ne sont ajoutées aux caches des pages.
+     * @param source Archive contenant la couverture
+     * @param width Largeur de la couverture
+     * @return Couverture mise à l'échelle
+     * @throws IOException Retourne une exception si l'archive ou l'entrée de la couverture n'a pas pu être lue
+     */
+    public static BufferedImage readCover(File source, int width) throws IOException {
+        ByteBuffer data = isRar(source.getPath()) ? readRarCover(source) : readZipCover(source);
+        return RenditionCache.scale(ImageDecoder.decode(data, width, 0), width, 0, ImageScaler.QUALITY);
+    }
+
+    /**
+     * Méthode permettant de lire l'entrée de la couverture d'une archive ZIP
+     * @param source Archive ZIP
+     * @return Contenu décompressé de l'entrée de la couverture
+     * @throws IOException Retourne une exception si l'archive n'a pas pu être lue ou ne contient aucune image
+     */
+    private static ByteBuffer readZipCover(File source) throws IOException {
+        try (ZipArchive archive = new ZipArchive(source)) {
+            ZipArchive.Entry first = null;
+            for (ZipArchive.Entry entry : archive.getEntries()) {
+                if (!entry.isDirectory() && isImage(entry.getName())
+                    && (first == null || NaturalOrderComparator.INSTANCE.compare(entry.getName(), first.getName()) < 0)) {
+                    first = entry;
+                }
+            }
+            if (first == null) {
+                throw new IOException("No page found in " + source.getName());
+            }
+            // the comic may be open, its pages already cached
+            ByteBuffer cached = COMPRESSED_PAGES.get(PageByteCache.key(source.getAbsolutePath(), first.getName()));
+            return cached != null ? cached : archive.read(first);
+        }
+    }
+
+    /**
+     * Méthode permettant de lire l'entrée de la couverture d'une archive RAR.
+     * Le flux d'une archive "solide" dépend de toutes les entrées précédentes : il n'est décompressé que jusqu'à la couverture.
+     * @param source Archive RAR
+     * @return Contenu décompressé de l'entrée de la couverture
+     * @throws IOException Retourne une exception si l'archive n'a pas pu être lue ou ne contient aucune image
+     */
+    private static ByteBuffer readRarCover(File source) throws IOException {
+        try (Archive archive = new Archive(source)) {
+            FileHeader first = null;
+            for (FileHeader header : archive.getFileHeaders()) {
+                if (!header.isDirectory() && isImage(header.getFileName())
+                    && (first == null || NaturalOrderComparator.INSTANCE.compare(header.getFileName(), first.getFileName()) < 0)) {
+                    first = header;
+                }
+            }
+            if (first == null) {
+                throw new IOException("No page found in " + source.getName());
+            }
+            ByteBuffer cached = COMPRESSED_PAGES.get(PageByteCache.key(source.getAbsolutePath(), first.getFileName()));
+            if (cached != null) {
+                return cached;
+            }
+            if (archive.getMainHeader().isSolid()) {
+                for (FileHeader header : archive.getFileHeaders()) {
+                    if (header == first) {
+                        break;
+                    }
+                    if (!header.isDirectory()) {
+                        archive.extractFile(header, OutputStream.nullOutputStream());
                     }
-                    // convert output stream to buffered image
-                    Image image = Toolkit.getDefaultToolkit().createImage(((ByteArrayOutputStream) out).toByteArray());
-                    // add image to comic
-                    // cut off the file extension
-                    String id = file.getName().substring(0, file.getName().lastIndexOf("."));
-                    destination.add(new Page(id, image.getWidth(null), image.getHeight(null), image));
                 }
             }
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(first.getFullUnpackSize(), Integer.MAX_VALUE));
+            archive.extractFile(first, out);
+            return ByteBuffer.wrap(out.toByteArray());
+        } catch (RarException e) {
+            throw new IOException("Could not read the cover of " + source.getName(), e);
         }
-    }    
+    }
+
+    /**
+     * Méthode permettant de savoir si un chemin désigne une archive RAR (.cbr, .rar)
+     * @param path Chemin de l'archive
+     * @return true si l'archive est une archive RAR
+     */
+    public static boolean isRar(String path) {
+        String lower = path.toLowerCase();
+        return lower.endsWith(".cbr") || lower.endsWith(".rar");
+    }
+
+    /**
+     * Méthode permettant de savoir si une entrée d'archive est une image de page
+     * @param name Nom de l'entrée
+     * @return true si l'entrée est une image JPEG ou PNG
+     */
+    public static boolean isImage(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png");
+    }
+
+    /**
+     * Méthode permettant de décompresser en mémoire une seule entrée d'une archive RAR.
+     * Si l'entrée d'une archive "solide" a été retirée du cache des pages, l'archive est relue en une seule passe jusqu'à la fin
+     * d'une fenêtre autour de l'entrée, seules les images de la fenêtre étant ajoutées à nouveau au cache.
+     * @param source Archive RAR
+     * @param entryName Nom de l'entrée à lire
+     * @return Contenu décompressé de l'entrée
+     * @throws IOException Retourne une exception si l'entrée n'a pas pu être lue
+     */
+    private static ByteBuffer readRarEntry(File source, String entryName) throws IOException {
+        try (Archive archive = new Archive(source)) {
+            if (archive.getMainHeader().isSolid()) {
+                ByteBuffer data = ingestSolid(archive, source, entryName);
+                if (data != null) {
+                    return data;
+                }
+            } else {
+                for (FileHeader header : archive.getFileHeaders()) {
+                    if (header.getFileName().equals(entryName)) {
+                        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(header.getFullUnpackSize(), Integer.MAX_VALUE));
+                        archive.extractFile(header, out);
+                        return ByteBuffer.wrap(out.toByteArray());
+                    }
+                }
+            }
+        } catch (RarException e) {
+            throw new IOException("Could not read " + entryName + " from " + source.getName(), e);
+        }
+        throw new IOException("Entry " + entryName + " not found in " + source.getName());
+    }
+
+    /**
+     * Méthode permettant de lire une fenêtre d'images d'une archive RAR "solide" en une seule passe séquentielle.
+     * La fenêtre commence quelques images (SOLID_WINDOW_BEHIND) avant l'entrée demandée, ou à la première image,
+     * et s'étend après elle tant que les images conservées ne dépassent pas la moitié du budget du cache des pages :
+     * une archive plus grande que le cache n'y est donc jamais relue en entier.
+     * Chaque image de la fenêtre qui n'est pas déjà en cache y est ajoutée sous sa forme compressée (JPEG, PNG, ...) ;
+     * les entrées précédant la fenêtre sont décompressées puis ignorées, car le flux d'une archive solide dépend de toutes
+     * les entrées précédentes, et les entrées suivant la fenêtre ne sont pas lues.
+     * @param archive Archive RAR ouverte
+     * @param source Fichier de l'archive
+     * @param entryName Nom de l'entrée dont le contenu doit être renvoyé, ou null pour lire les premières images
+     * @return Contenu de l'entrée demandée, ou null si elle n'a pas été trouvée
+     * @throws RarException Retourne une exception si l'archive n'a pas pu être décompressée
+     */
+    private static ByteBuffer ingestSolid(Archive archive, File source, String entryName) throws RarException {
+        // position of the requested entry among the images, in the order of the solid stream
+        int requested = 0;
+        if (entryName != null) {
+            requested = -1;
+            int index = 0;
+            for (FileHeader header : archive.getFileHeaders()) {
+                if (header.isDirectory() || !isImage(header.getFileName())) {
+                    continue;
+                }
+                if (header.getFileName().equals(entryName)) {
+                    requested = index;
+                    break;
+                }
+                index++;
+            }
+            if (requested < 0) {
+                return null;
+            }
+        }
+        int from = Math.max(0, requested - SOLID_WINDOW_BEHIND);
+        long budget = COMPRESSED_PAGES.getCapacity() / 2;
+        long kept = 0;
+        int index = 0;
+        ByteBuffer result = null;
+        for (FileHeader header : archive.getFileHeaders()) {
+            if (header.isDirectory()) {
+                continue;
+            }
+            boolean image = isImage(header.getFileName());
+            if (!image || index < from) {
+                // the solid stream depends on the entries before the window, they are decompressed and dropped
+                archive.extractFile(header, OutputStream.nullOutputStream());
+                index += image ? 1 : 0;
+                continue;
+            }
+            if (index > requested && kept >= budget) {
+                // the window is full, the rest of the stream is not needed
+                break;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(header.getFullUnpackSize(), Integer.MAX_VALUE));
+            archive.extractFile(header, out);
+            byte[] data = out.toByteArray();
+            String key = PageByteCache.key(source.getAbsolutePath(), header.getFileName());
+            if (!COMPRESSED_PAGES.contains(key)) {
+                COMPRESSED_PAGES.put(key, data);
+            }
+            kept += data.length;
+            if (entryName != null && index == requested) {
+                result = ByteBuffer.wrap(data);
+            }
+            index++;
+        }
+        return result;
+    }
+
+    /**
+     * Méthode permettant de renseigner les informations d'en-tête d'une page
+     * @param page Page à renseigner
+     * @param info Informations obtenues par sondage de l'en-tête, ou null si le sondage a échoué
+     */
+    private static void setInfo(Page page, ImageProbe.Info info) {
+        if (info != null) {
+            page.setWidth(info.getWidth());
+            page.setHeight(info.getHeight());
+            page.setFormat(info.getFormat());
+            page.setColorType(info.getColorType());
+        }
+    }
+
+    /**
+     * Méthode permettant de calculer l'identifiant d'une page à partir du nom de son entrée (sans l'extension)
+     * @param name Nom de l'entrée
+     * @return Identifiant de la page
+     */
+    private static String pageId(String name) {
+        // cut off the file extension
+        return name.substring(0, name.lastIndexOf("."));
+    }
+
+    /**
+     * Méthode permettant de trier une liste de pages dans l'ordre naturel des noms d'entrées
+     * @param pages Pages à trier
+     */
+    private static void sortPages(List<Page> pages) {
+        pages.sort((a, b) -> NaturalOrderComparator.INSTANCE.compare(a.getEntryName(), b.getEntryName()));
+    }
 }
@@ -0,0 +1,82 @@
+package edu.grimalkin.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe DecodedImageCache : poids des images et éviction LRU
+ */
+class DecodedImageCacheTest {
+    @Test
+    void weighsTheDataBufferOfAnImage() {
+        assertEquals(400, DecodedImageCache.weight(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB)));
+        assertEquals(100, DecodedImageCache.weight(new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY)));
+        assertEquals(300, DecodedImageCache.weight(new BufferedImage(10, 10, BufferedImage.TYPE_3BYTE_BGR)));
+        // a sub-image shares the pixels of its parent
+        assertEquals(400, DecodedImageCache.weight(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB).getSubimage(0, 0, 2, 2)));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedImages() {
+        DecodedImageCache cache = new DecodedImageCache(1200);
+        BufferedImage a = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+        BufferedImage b = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+        BufferedImage c = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+        cache.put("a", a);
+        cache.put("b", b);
+        cache.put("c", c);
+        assertEquals(1200, cache.getSize());
+        // a becomes the most recently used, b is dropped first
+        assertSame(a, cache.get("a"));
+        cache.put("d", new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB));
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertEquals(1, cache.getEvictions());
+        // a heavier image drops as many images as needed
+        cache.put("e", new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB));
+        assertFalse(cache.contains("c"));
+        assertFalse(cache.contains("a"));
+        assertEquals(3, cache.getEvictions());
+        assertEquals(1200, cache.getSize());
+    }
+
+    @Test
+    void replacesAndRemovesImages() {
+        DecodedImageCache cache = new DecodedImageCache(1000);
+        cache.put("a", new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB));
+        cache.put("a", new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY));
+        assertEquals(100, cache.getSize());
+        cache.remove("a");
+        assertEquals(0, cache.getSize());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void doesNotKeepImagesHeavierThanTheCapacity() {
+        DecodedImageCache cache = new DecodedImageCache(1000);
+        cache.put("a", new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB));
+        cache.put("large", new BufferedImage(20, 20, BufferedImage.TYPE_INT_RGB));
+        assertFalse(cache.contains("large"));
+        assertTrue(cache.contains("a"));
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    void keepsTheWiderImageOfAPage() {
+        DecodedImageCache cache = new DecodedImageCache(100_000);
+        BufferedImage wide = new BufferedImage(100, 10, BufferedImage.TYPE_INT_RGB);
+        BufferedImage narrow = new BufferedImage(50, 5, BufferedImage.TYPE_INT_RGB);
+        assertSame(wide, cache.putIfWider("a", wide));
+        assertSame(wide, cache.putIfWider("a", narrow));
+        BufferedImage wider = new BufferedImage(200, 20, BufferedImage.TYPE_INT_RGB);
+        assertSame(wider, cache.putIfWider("a", wider));
+        assertSame(wider, cache.get("a"));
+    }
+}
@@ -0,0 +1,116 @@
+package edu.grimalkin.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe ImageProbe : dimensions, format et type de couleur de chaque format, sans décodage
+ */
+class ImageProbeTest {
+    /**
+     * Méthode permettant d'encoder une image dans un format donné
+     * @param image Image à encoder
+     * @param format Format ImageIO
+     * @return Octets de l'image encodée
+     * @throws IOException Retourne une exception si l'image n'a pas pu être encodée
+     */
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Méthode permettant de sonder une image encodée
+     * @param data Octets de l'image
+     * @return Informations de l'image
+     */
+    private static ImageProbe.Info probe(byte[] data) {
+        ImageProbe.Info info = ImageProbe.probe(ByteBuffer.wrap(data));
+        assertNotNull(info);
+        return info;
+    }
+
+    /**
+     * Méthode permettant de vérifier les informations d'une image
+     * @param info Informations de l'image
+     * @param format Format attendu
+     * @param width Largeur attendue
+     * @param height Hauteur attendue
+     * @param colorType Type de couleur attendu
+     */
+    private static void assertInfo(ImageProbe.Info info, String format, int width, int height, String colorType) {
+        assertEquals(format, info.getFormat());
+        assertEquals(width, info.getWidth());
+        assertEquals(height, info.getHeight());
+        assertEquals(colorType, info.getColorType());
+    }
+
+    @Test
+    void probesJpeg() throws IOException {
+        assertInfo(probe(encode(new BufferedImage(123, 45, BufferedImage.TYPE_INT_RGB), "jpeg")), "jpeg", 123, 45, "rgb");
+        assertInfo(probe(encode(new BufferedImage(7, 300, BufferedImage.TYPE_BYTE_GRAY), "jpeg")), "jpeg", 7, 300, "gray");
+    }
+
+    @Test
+    void probesPng() throws IOException {
+        assertInfo(probe(encode(new BufferedImage(640, 480, BufferedImage.TYPE_INT_ARGB), "png")), "png", 640, 480, "rgba");
+        assertInfo(probe(encode(new BufferedImage(10, 20, BufferedImage.TYPE_INT_RGB), "png")), "png", 10, 20, "rgb");
+        assertInfo(probe(encode(new BufferedImage(3, 4, BufferedImage.TYPE_BYTE_GRAY), "png")), "png", 3, 4, "gray");
+        assertInfo(probe(encode(new BufferedImage(5, 6, BufferedImage.TYPE_BYTE_INDEXED), "png")), "png", 5, 6, "indexed");
+    }
+
+    @Test
+    void probesGifAndBmp() throws IOException {
+        assertInfo(probe(encode(new BufferedImage(300, 200, BufferedImage.TYPE_BYTE_INDEXED), "gif")), "gif", 300, 200, "indexed");
+        assertInfo(probe(encode(new BufferedImage(31, 17, BufferedImage.TYPE_INT_RGB), "bmp")), "bmp", 31, 17, "rgb");
+    }
+
+    @Test
+    void probesWebp() {
+        // lossy: 14 bits dimensions after the frame tag and the start code
+        ByteBuffer lossy = webp(0x56503820);
+        lossy.put(26, (byte) 0x20).put(27, (byte) 0x03).put(28, (byte) 0x58).put(29, (byte) 0x02);
+        assertInfo(probe(lossy.array()), "webp", 800, 600, "rgb");
+        // lossless: 14 bits dimensions minus one after the signature byte
+        ByteBuffer lossless = webp(0x5650384C);
+        int bits = (100 - 1) | (50 - 1) << 14;
+        lossless.put(20, (byte) 0x2F).put(21, (byte) bits).put(22, (byte) (bits >> 8)).put(23, (byte) (bits >> 16)).put(24, (byte) (bits >> 24));
+        assertInfo(probe(lossless.array()), "webp", 100, 50, "rgba");
+        // extended: 24 bits canvas size minus one, alpha flag
+        ByteBuffer extended = webp(0x56503858);
+        extended.put(20, (byte) 0x10).put(24, (byte) 0xFF).put(25, (byte) 0x0F).put(27, (byte) 0x0F).put(28, (byte) 0x27);
+        assertInfo(probe(extended.array()), "webp", 4096, 10000, "rgba");
+    }
+
+    @Test
+    void needsEnoughBytes() throws IOException {
+        byte[] jpeg = encode(new BufferedImage(123, 45, BufferedImage.TYPE_INT_RGB), "jpeg");
+        // the SOF marker comes after the quantization tables
+        assertNull(ImageProbe.probe(ByteBuffer.wrap(Arrays.copyOf(jpeg, 20))));
+        assertNull(ImageProbe.probe(ByteBuffer.wrap(new byte[] {'n', 'o', 't', ' ', 'a', 'n', ' ', 'i', 'm', 'a', 'g', 'e'})));
+    }
+
+    /**
+     * Méthode permettant de créer l'en-tête RIFF d'un WebP
+     * @param chunk Identifiant du premier bloc (VP8, VP8L ou VP8X)
+     * @return En-tête de 30 octets, à compléter
+     */
+    private static ByteBuffer webp(int chunk) {
+        ByteBuffer data = ByteBuffer.allocate(30).order(ByteOrder.BIG_ENDIAN);
+        data.putInt(0, 0x52494646).putInt(8, 0x57454250).putInt(12, chunk);
+        return data;
+    }
+}
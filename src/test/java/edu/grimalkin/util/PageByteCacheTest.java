@@ -0,0 +1,92 @@
+package edu.grimalkin.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests de la classe PageByteCache : arènes, éviction de la plus ancienne arène et seconde chance
+ */
+class PageByteCacheTest {
+    private static final int MB = 1024 * 1024;
+
+    /**
+     * Méthode permettant de créer les données d'une page
+     * @param length Taille des données
+     * @param value Valeur de chaque octet
+     * @return Données de la page
+     */
+    private static byte[] page(int length, int value) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) value);
+        return data;
+    }
+
+    @Test
+    void returnsWhatWasPut() {
+        PageByteCache cache = new PageByteCache(16 * MB);
+        byte[] data = {1, 2, 3, 4};
+        cache.put("a", data);
+        ByteBuffer read = cache.get("a");
+        byte[] bytes = new byte[read.remaining()];
+        read.get(bytes);
+        assertArrayEquals(data, bytes);
+        assertTrue(read.isReadOnly());
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(8 * MB, cache.getSize());
+        assertEquals("archive.cbz!page01.jpg", PageByteCache.key("archive.cbz", "page01.jpg"));
+    }
+
+    @Test
+    void evictsTheOldestArena() {
+        PageByteCache cache = new PageByteCache(16 * MB);
+        // two entries per arena of 8 MB
+        for (String key : new String[] {"a", "b", "c", "d"}) {
+            cache.put(key, page(3 * MB, key.charAt(0)));
+        }
+        assertEquals(0, cache.getEvictions());
+        assertEquals(16 * MB, cache.getSize());
+        cache.put("e", page(3 * MB, 'e'));
+        assertFalse(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertTrue(cache.contains("e"));
+        assertEquals(2, cache.getEvictions());
+        assertEquals(16 * MB, cache.getSize());
+    }
+
+    @Test
+    void givesASecondChanceToEntriesReadFromTheOldestArena() {
+        PageByteCache cache = new PageByteCache(16 * MB);
+        cache.put("a", page(3 * MB, 'a'));
+        cache.put("b", page(3 * MB, 'b'));
+        cache.put("c", page(3 * MB, 'c'));
+        // a moves to the arena of c
+        assertEquals('a', cache.get("a").get(0));
+        cache.put("d", page(3 * MB, 'd'));
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertEquals(1, cache.getEvictions());
+        assertEquals('a', cache.get("a").get(3 * MB - 1));
+    }
+
+    @Test
+    void keepsLargeEntriesInTheirOwnArenaWithinTheCapacity() {
+        PageByteCache cache = new PageByteCache(16 * MB);
+        cache.put("large", page(10 * MB, 1));
+        assertTrue(cache.contains("large"));
+        assertEquals(10 * MB, cache.getSize());
+        cache.put("oversize", page(17 * MB, 2));
+        assertFalse(cache.contains("oversize"));
+        assertTrue(cache.contains("large"));
+    }
+}
@@ -0,0 +1,150 @@
+package edu.grimalkin.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import edu.grimalkin.data.Comic;
+import edu.grimalkin.data.Library;
+
+/**
+ * Tests de la classe ProgressJournal : rejeu, passage au fichier suivant et rejet des enregistrements invalides
+ */
+class ProgressJournalTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Méthode permettant de créer une bibliothèque de deux comics
+     * @return Bibliothèque, dont les comics sont à la page 0
+     */
+    private static Library library() {
+        Library library = new Library();
+        library.addComic(new Comic("First", "/comics/first.cbz"));
+        library.addComic(new Comic("Second", "/comics/second.cbz"));
+        return library;
+    }
+
+    /**
+     * Méthode permettant d'enregistrer la progression d'un comic
+     * @param journal Journal
+     * @param comic Comic
+     * @param page Page courante et dernière page lue
+     * @throws IOException Retourne une exception si l'enregistrement n'a pas pu être écrit
+     */
+    private static void append(ProgressJournal journal, Comic comic, int page) throws IOException {
+        comic.setCurrentPage(page);
+        comic.setLastPageRead(page);
+        journal.append(comic);
+    }
+
+    /**
+     * Méthode permettant de lister les fichiers du journal
+     * @return Fichiers du dossier du journal
+     * @throws IOException Retourne une exception si le dossier n'a pas pu être lu
+     */
+    private long files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void replaysTheLastRecordOfEachComic() throws IOException {
+        Library written = library();
+        ProgressJournal journal = new ProgressJournal(directory, ProgressJournal.Durability.RECORD);
+        append(journal, written.getComic("First"), 3);
+        append(journal, written.getComic("Second"), 8);
+        append(journal, written.getComic("First"), 5);
+        journal.close();
+
+        Library read = library();
+        assertEquals(3, new ProgressJournal(directory, ProgressJournal.Durability.RECORD).replay(read));
+        assertEquals(5, read.getComic("First").getCurrentPage());
+        assertEquals(5, read.getComic("First").getLastPageRead());
+        assertEquals(8, read.getComic("Second").getCurrentPage());
+    }
+
+    @Test
+    void ignoresRecordsOfComicsNoLongerInTheLibrary() throws IOException {
+        Library written = library();
+        ProgressJournal journal = new ProgressJournal(directory, ProgressJournal.Durability.SHUTDOWN);
+        append(journal, written.getComic("First"), 3);
+        append(journal, new Comic("Removed", "/comics/removed.cbz"), 9);
+        journal.close();
+
+        Library read = library();
+        assertEquals(1, new ProgressJournal(directory, ProgressJournal.Durability.SHUTDOWN).replay(read));
+        assertEquals(3, read.getComic("First").getCurrentPage());
+    }
+
+    @Test
+    void deletesTheFilesBeforeARotation() throws IOException {
+        Library written = library();
+        ProgressJournal journal = new ProgressJournal(directory, ProgressJournal.Durability.BATCH);
+        append(journal, written.getComic("First"), 3);
+        long generation = journal.rotate();
+        append(journal, written.getComic("Second"), 8);
+        journal.force();
+        assertEquals(2, files());
+        assertEquals(ProgressJournal.RECORD_SIZE, journal.size());
+        // the snapshot holds the records before the rotation
+        journal.deleteBefore(generation);
+        assertEquals(1, files());
+        journal.close();
+
+        Library read = library();
+        assertEquals(1, new ProgressJournal(directory, ProgressJournal.Durability.BATCH).replay(read));
+        assertEquals(0, read.getComic("First").getCurrentPage());
+        assertEquals(8, read.getComic("Second").getCurrentPage());
+    }
+
+    @Test
+    void stopsAtTheFirstInvalidRecord() throws IOException {
+        Library written = library();
+        ProgressJournal journal = new ProgressJournal(directory, ProgressJournal.Durability.RECORD);
+        append(journal, written.getComic("First"), 3);
+        append(journal, written.getComic("Second"), 8);
+        append(journal, written.getComic("First"), 5);
+        journal.close();
+        Path file;
+        try (Stream<Path> files = Files.list(directory)) {
+            file = files.findFirst().get();
+        }
+        // a bit flipped in the page of the second record
+        byte[] data = Files.readAllBytes(file);
+        data[ProgressJournal.RECORD_SIZE + 12] ^= 1;
+        Files.write(file, data);
+
+        Library read = library();
+        assertEquals(1, new ProgressJournal(directory, ProgressJournal.Durability.RECORD).replay(read));
+        assertEquals(3, read.getComic("First").getCurrentPage());
+        assertEquals(0, read.getComic("Second").getCurrentPage());
+    }
+
+    @Test
+    void ignoresATornLastRecord() throws IOException {
+        Library written = library();
+        ProgressJournal journal = new ProgressJournal(directory, ProgressJournal.Durability.RECORD);
+        append(journal, written.getComic("First"), 3);
+        append(journal, written.getComic("First"), 5);
+        journal.close();
+        Path file;
+        try (Stream<Path> files = Files.list(directory)) {
+            file = files.findFirst().get();
+        }
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length - 5));
+
+        Library read = library();
+        assertEquals(1, new ProgressJournal(directory, ProgressJournal.Durability.RECORD).replay(read));
+        assertEquals(3, read.getComic("First").getCurrentPage());
+    }
+}
@@ -0,0 +1,91 @@
+package edu.grimalkin.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.grimalkin.data.Comic;
+
+/**
+ * Tests de la classe SearchIndex : correspondances par préfixe, sous-chaîne et faute de frappe, et classement
+ */
+class SearchIndexTest {
+    private SearchIndex index;
+    private Comic batman;
+    private Comic superman;
+    private Comic spirou;
+    private Comic asterix;
+
+    @BeforeEach
+    void setUp() {
+        index = new SearchIndex();
+        batman = new Comic("Batman: Year One", "/comics/dc/batman-year-one.cbz");
+        superman = new Comic("Superman Returns", "/comics/dc/superman.cbz");
+        spirou = new Comic("Spirou et Fantasio", "/comics/bd/spirou_01.cbr");
+        asterix = new Comic("Astérix le Gaulois", "/comics/bd/asterix.cbz");
+        for (Comic comic : Arrays.asList(batman, superman, spirou, asterix)) {
+            index.add(comic);
+        }
+    }
+
+    @Test
+    void matchesPrefixes() {
+        assertEquals(Arrays.asList(batman), index.query("bat"));
+        assertEquals(Arrays.asList(spirou), index.query("sp"));
+        assertEquals(Arrays.asList(superman), index.query("SUPER"));
+    }
+
+    @Test
+    void matchesSubstrings() {
+        assertEquals(Arrays.asList(batman, superman), index.query("man"));
+        assertEquals(Arrays.asList(spirou), index.query("tasi"));
+    }
+
+    @Test
+    void matchesTypos() {
+        // swapped letters, a missing letter, a wrong letter
+        assertEquals(Arrays.asList(batman), index.query("batmna"));
+        assertEquals(Arrays.asList(superman), index.query("supreman"));
+        assertEquals(Arrays.asList(spirou), index.query("fantazio"));
+        assertTrue(index.query("xyzzy").isEmpty());
+    }
+
+    @Test
+    void ignoresAccentsAndCase() {
+        assertEquals(Arrays.asList(asterix), index.query("ASTERIX"));
+        assertEquals(Arrays.asList(asterix), index.query("astérix"));
+    }
+
+    @Test
+    void indexesFileNamesButNotFolders() {
+        assertEquals(Arrays.asList(spirou), index.query("01"));
+        assertTrue(index.query("comics").isEmpty());
+    }
+
+    @Test
+    void requiresEveryTermAndRanksPrefixesFirst() {
+        assertEquals(Arrays.asList(batman), index.query("batman one"));
+        assertTrue(index.query("batman returns").isEmpty());
+        // "man" starts a word of manhattan, and is only inside a word of batman and superman
+        Comic manhattan = new Comic("Manhattan Projects", "/comics/manhattan.cbz");
+        index.add(manhattan);
+        assertEquals(Arrays.asList(manhattan, batman, superman), index.query("man"));
+    }
+
+    @Test
+    void forgetsRemovedComics() {
+        index.remove(batman);
+        assertTrue(index.query("batman").isEmpty());
+        // past half of the slots removed, the index is rebuilt in the order of addition
+        index.remove(superman);
+        index.remove(asterix);
+        assertEquals(Arrays.asList(spirou), index.query(""));
+        index.add(batman);
+        assertEquals(Arrays.asList(spirou, batman), index.query(""));
+        assertEquals(Arrays.asList(batman), index.query("bat"));
+    }
+}
@@ -0,0 +1,169 @@
+package edu.grimalkin.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests de la classe ZipArchive : lecture du répertoire central (commentaire de fin, ZIP64), des entrées et des noms
+ */
+class ZipArchiveTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Méthode permettant de lire le contenu d'un tampon
+     * @param buffer Tampon à lire
+     * @return Octets du tampon, de sa position à sa limite
+     */
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Méthode permettant de créer des données peu compressibles
+     * @param length Taille des données
+     * @return Données
+     */
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + i / 7);
+        }
+        return data;
+    }
+
+    @Test
+    void readsEntriesBehindAnEndOfCentralDirectoryComment() throws IOException {
+        File file = directory.resolve("comment.cbz").toFile();
+        byte[] stored = data(5000);
+        byte[] deflated = data(20000);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            ZipEntry entry = new ZipEntry("page01.jpg");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(stored.length);
+            CRC32 crc = new CRC32();
+            crc.update(stored);
+            entry.setCrc(crc.getValue());
+            out.putNextEntry(entry);
+            out.write(stored);
+            out.putNextEntry(new ZipEntry("page02.jpg"));
+            out.write(deflated);
+            // the longest comment allowed, holding a fake end of central directory signature
+            char[] comment = new char[0xFFFF];
+            Arrays.fill(comment, 'x');
+            "PK\u0005\u0006".getChars(0, 4, comment, 100);
+            out.setComment(new String(comment));
+        }
+        try (ZipArchive archive = new ZipArchive(file)) {
+            assertEquals(2, archive.getEntries().size());
+            ZipArchive.Entry first = archive.getEntry("page01.jpg");
+            ZipArchive.Entry second = archive.getEntry("page02.jpg");
+            assertEquals(ZipArchive.STORED, first.getMethod());
+            assertEquals(ZipArchive.DEFLATED, second.getMethod());
+            assertArrayEquals(stored, bytes(archive.read(first)));
+            assertArrayEquals(deflated, bytes(archive.read(second)));
+            assertArrayEquals(Arrays.copyOf(deflated, 100), bytes(archive.readHead(second, 100)));
+            assertArrayEquals(deflated, bytes(ZipArchive.read(file, second.getOffset(), second.getCompressedSize(), second.getSize())));
+        }
+    }
+
+    @Test
+    void readsZip64Records() throws IOException {
+        byte[] name = "page01.jpg".getBytes(StandardCharsets.UTF_8);
+        byte[] content = "zip64 page".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer zip = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        // local header, sizes in its zip64 extra field
+        zip.putInt(0x04034b50).putShort((short) 45).putShort((short) 0x800).putShort((short) 0).putInt(0).putInt(0)
+            .putInt(0xFFFFFFFF).putInt(0xFFFFFFFF).putShort((short) name.length).putShort((short) 20).put(name)
+            .putShort((short) 1).putShort((short) 16).putLong(content.length).putLong(content.length).put(content);
+        int centralOffset = zip.position();
+        // central directory entry, sizes and local header offset saturated
+        zip.putInt(0x02014b50).putShort((short) 45).putShort((short) 45).putShort((short) 0x800).putShort((short) 0).putInt(0).putInt(0)
+            .putInt(0xFFFFFFFF).putInt(0xFFFFFFFF).putShort((short) name.length).putShort((short) 28).putShort((short) 0)
+            .putShort((short) 0).putShort((short) 0).putInt(0).putInt(0xFFFFFFFF).put(name)
+            .putShort((short) 1).putShort((short) 24).putLong(content.length).putLong(content.length).putLong(0);
+        int centralSize = zip.position() - centralOffset;
+        int zip64Offset = zip.position();
+        zip.putInt(0x06064b50).putLong(44).putShort((short) 45).putShort((short) 45).putInt(0).putInt(0)
+            .putLong(1).putLong(1).putLong(centralSize).putLong(centralOffset);
+        zip.putInt(0x07064b50).putInt(0).putLong(zip64Offset).putInt(1);
+        byte[] comment = "comment".getBytes(StandardCharsets.UTF_8);
+        zip.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) 0xFFFF).putShort((short) 0xFFFF)
+            .putInt(0xFFFFFFFF).putInt(0xFFFFFFFF).putShort((short) comment.length).put(comment);
+        File file = directory.resolve("zip64.cbz").toFile();
+        Files.write(file.toPath(), Arrays.copyOf(zip.array(), zip.position()));
+
+        try (ZipArchive archive = new ZipArchive(file)) {
+            assertEquals(1, archive.getEntries().size());
+            ZipArchive.Entry entry = archive.getEntry("page01.jpg");
+            assertNotNull(entry);
+            assertEquals(content.length, entry.getSize());
+            assertEquals(content.length, entry.getCompressedSize());
+            assertEquals(0, entry.getOffset());
+            assertArrayEquals(content, bytes(archive.read(entry)));
+        }
+    }
+
+    @Test
+    void decodesNamesWithoutTheUtf8FlagAsCp437() throws IOException {
+        File file = directory.resolve("cp437.cbz").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file), Charset.forName("IBM437"))) {
+            out.putNextEntry(new ZipEntry("café.jpg"));
+            out.write(1);
+        }
+        try (ZipArchive archive = new ZipArchive(file)) {
+            assertEquals("café.jpg", archive.getEntries().get(0).getName());
+        }
+    }
+
+    @Test
+    void sharesOneArchiveWhileRetained() throws IOException {
+        File file = directory.resolve("shared.cbz").toFile();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            out.putNextEntry(new ZipEntry("page01.jpg"));
+            out.write(data(100));
+        }
+        assertNull(ZipArchive.shared(file));
+        Closeable first = ZipArchive.retain(file);
+        Closeable second = ZipArchive.retain(file);
+        ZipArchive shared = ZipArchive.shared(file);
+        assertNotNull(shared);
+        second.close();
+        // closing a reference twice releases it once
+        second.close();
+        assertSame(shared, ZipArchive.shared(file));
+        first.close();
+        assertNull(ZipArchive.shared(file));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotZipArchives() throws IOException {
+        File file = directory.resolve("page.jpg").toFile();
+        Files.write(file.toPath(), data(1000));
+        assertThrows(IOException.class, () -> new ZipArchive(file));
+    }
+}